@@ -7,10 +7,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import info.kgeorgiy.java.advanced.mapper.ParallelMapper;
 
@@ -19,13 +29,36 @@ import static java.lang.Math.min;
 public class IterativeParallelism implements ListIP {
 
     private final ParallelMapper mapper;
+    private final ExecutorService executor;
+    private final int inlineThreshold;
+    private final int rangesPerThread;
+
+    /**
+     * Name of system property setting number of threads in shared pool.
+     */
+    public static final String POOL_SIZE_PROPERTY = "ru.ifmo.rain.ustinov.concurrent.poolSize";
+
+    /**
+     * Pool of daemon threads shared by instances created by {@link #withSharedPool(int)}.
+     * Its size is given by {@value #POOL_SIZE_PROPERTY} system property,
+     * number of available processors by default.
+     */
+    private static class SharedPool {
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+        private static final ExecutorService POOL = Executors.newFixedThreadPool(
+                Math.max(1, Integer.getInteger(POOL_SIZE_PROPERTY, Runtime.getRuntime().availableProcessors())), task -> {
+                    final Thread thread = new Thread(task, "iterative-parallelism-" + COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
 
     /**
      * Default constructor.
      * Creates an IterativeParallelism instance operating without {@link ParallelMapper}.
      */
     public IterativeParallelism() {
-        mapper = null;
+        this(null, null, 0, 1);
     }
 
     /**
@@ -35,53 +68,340 @@ public class IterativeParallelism implements ListIP {
      * @param mapper {@link ParallelMapper} instance
      */
     public IterativeParallelism(ParallelMapper mapper) {
-        this.mapper = mapper;
+        this(mapper, null, 0, 1);
     }
 
-    private <T, U, V> U calculate(int threadCount, List<? extends T> list, Function<Stream<? extends T>, ? extends V> map,
-                                  Function<Stream<? extends V>, ? extends U> reduce) throws InterruptedException {
-        final List<Thread> threads = new ArrayList<>(threadCount);
-        if (threadCount == 0) {
-            throw new IllegalArgumentException("Number of threads is zero");
+    /**
+     * Dynamic mapper constructor.
+     * Creates an IterativeParallelism instance with {@link ParallelMapper} as a core mapper,
+     * splitting lists into {@code rangesPerThread} ranges per thread, that are mapped in
+     * order of the mapper's task queue.
+     *
+     * @param mapper          {@link ParallelMapper} instance
+     * @param rangesPerThread number of ranges per thread, {@code 1} for equal static slices
+     */
+    public IterativeParallelism(ParallelMapper mapper, int rangesPerThread) {
+        this(mapper, null, 0, rangesPerThread);
+    }
+
+    /**
+     * Pooled constructor.
+     * Creates an IterativeParallelism instance running chunks on given long-lived executor
+     * instead of new threads. The calling thread processes the first chunk itself.
+     * Lists shorter than {@code inlineThreshold} are processed by the calling thread only.
+     * Executor is not shut down by this instance.
+     *
+     * @param executor        executor running chunks
+     * @param inlineThreshold minimal size of list processed in parallel
+     */
+    public IterativeParallelism(ExecutorService executor, int inlineThreshold) {
+        this(executor, inlineThreshold, 1);
+    }
+
+    /**
+     * Dynamic pooled constructor.
+     * Creates an IterativeParallelism instance running on given executor, like
+     * {@link #IterativeParallelism(ExecutorService, int)}, with dynamic scheduling
+     * described in {@link #withDynamicScheduling(int)}.
+     *
+     * @param executor        executor running workers
+     * @param inlineThreshold minimal size of list processed in parallel
+     * @param rangesPerThread number of ranges per thread, {@code 1} for equal static slices
+     */
+    public IterativeParallelism(ExecutorService executor, int inlineThreshold, int rangesPerThread) {
+        this(null, Objects.requireNonNull(executor), inlineThreshold, rangesPerThread);
+    }
+
+    private IterativeParallelism(ParallelMapper mapper, ExecutorService executor, int inlineThreshold, int rangesPerThread) {
+        if (inlineThreshold < 0) {
+            throw new IllegalArgumentException("Inline threshold must be non-negative");
         }
-        threadCount = min(threadCount, list.size());
-        List<V> results;
+        if (rangesPerThread <= 0) {
+            throw new IllegalArgumentException("Number of ranges per thread must be positive");
+        }
+        this.mapper = mapper;
+        this.executor = executor;
+        this.inlineThreshold = inlineThreshold;
+        this.rangesPerThread = rangesPerThread;
+    }
+
+    /**
+     * Creates an IterativeParallelism instance running chunks on pool of daemon threads
+     * shared by all such instances, with one thread per available processor,
+     * unless {@value #POOL_SIZE_PROPERTY} system property is set.
+     *
+     * @param inlineThreshold minimal size of list processed in parallel
+     * @return pooled IterativeParallelism instance
+     * @see #IterativeParallelism(ExecutorService, int)
+     */
+    public static IterativeParallelism withSharedPool(int inlineThreshold) {
+        return new IterativeParallelism(SharedPool.POOL, inlineThreshold);
+    }
+
+    /**
+     * Creates an IterativeParallelism instance running chunks on shared pool of daemon threads
+     * with dynamic scheduling.
+     *
+     * @param inlineThreshold minimal size of list processed in parallel
+     * @param rangesPerThread number of ranges per thread, {@code 1} for equal static slices
+     * @return pooled IterativeParallelism instance
+     * @see #withSharedPool(int)
+     * @see #withDynamicScheduling(int)
+     */
+    public static IterativeParallelism withSharedPool(int inlineThreshold, int rangesPerThread) {
+        return new IterativeParallelism(null, SharedPool.POOL, inlineThreshold, rangesPerThread);
+    }
+
+    /**
+     * Creates an IterativeParallelism instance operating on new threads with dynamic scheduling.
+     * Lists are split into {@code rangesPerThread} small ranges per thread, and every thread
+     * claims next unprocessed range once it is done with previous one, so threads getting
+     * cheap values do not stay idle while others process expensive ones.
+     * Results are kept in order of ranges, so order of values is preserved.
+     *
+     * @param rangesPerThread number of ranges per thread, {@code 1} for equal static slices
+     * @return dynamically scheduled IterativeParallelism instance
+     */
+    public static IterativeParallelism withDynamicScheduling(int rangesPerThread) {
+        return new IterativeParallelism(null, null, 0, rangesPerThread);
+    }
 
+    /**
+     * Minimal size of result of {@link #filter} or {@link #map}, that is copied from chunks in parallel.
+     */
+    private static final int PARALLEL_COPY_THRESHOLD = 1 << 16;
+
+    /**
+     * Number of values scanned by short-circuiting operations between checks, whether other chunks
+     * have already decided the result.
+     */
+    private static final int CANCELLATION_BLOCK = 256;
+
+    private static <T> List<List<? extends T>> split(int threadCount, List<? extends T> list) {
         final int partSize = list.size() / threadCount;
         final int remainder = list.size() % threadCount;
 
-        List<Stream<? extends T>> streams = new ArrayList<>(threadCount);
+        final List<List<? extends T>> chunks = new ArrayList<>(threadCount);
         int shift = 0;
         for (int i = 0; i < threadCount; i++) {
             int k = (i >= remainder ? 0 : 1);
-            streams.add(list.subList(i * partSize + shift, (i + 1) * partSize + shift + k).stream());
+            chunks.add(list.subList(i * partSize + shift, (i + 1) * partSize + shift + k));
             shift += k;
         }
-        if (mapper != null) {
-            results = mapper.map(map, streams);
+        return chunks;
+    }
+
+    private <T, U, V> U calculate(int threadCount, List<? extends T> list, Function<List<? extends T>, ? extends V> map,
+                                  Function<List<? extends V>, ? extends U> reduce) throws InterruptedException {
+        return calculate(threadCount, list, (index, chunk) -> map.apply(chunk), reduce);
+    }
+
+    /**
+     * Maps chunks of list in parallel and reduces results.
+     * Mapping function receives index of chunk along with chunk itself.
+     */
+    private <T, U, V> U calculate(int threadCount, List<? extends T> list,
+                                  BiFunction<Integer, List<? extends T>, ? extends V> map,
+                                  Function<List<? extends V>, ? extends U> reduce) throws InterruptedException {
+        if (threadCount == 0) {
+            throw new IllegalArgumentException("Number of threads is zero");
+        }
+        if (list.isEmpty() || list.size() < inlineThreshold) {
+            return reduce.apply(Collections.singletonList(map.apply(0, list)));
+        }
+        threadCount = min(threadCount, list.size());
+        final List<List<? extends T>> chunks = split((int) min((long) threadCount * rangesPerThread, list.size()), list);
+        final List<V> results;
+        if (mapper != null || chunks.size() == threadCount) {
+            results = run(chunks.size(), i -> map.apply(i, chunks.get(i)));
         } else {
-            results = new ArrayList<>(Collections.nCopies(threadCount, null));
-            for (int i = 0; i < threadCount; i++) {
-                final int ind = i;
-                threads.add(new Thread(() -> results.set(ind, map.apply(streams.get(ind)))));
-                threads.get(ind).start();
-            }
+            results = new ArrayList<>(Collections.nCopies(chunks.size(), null));
+            final AtomicInteger cursor = new AtomicInteger();
+            run(threadCount, worker -> {
+                for (int i = cursor.getAndIncrement(); i < chunks.size(); i = cursor.getAndIncrement()) {
+                    results.set(i, map.apply(i, chunks.get(i)));
+                }
+                return null;
+            });
+        }
+        return reduce.apply(results);
+    }
+
+    /**
+     * Runs tasks by mapper, executor or new threads and returns their results.
+     * Failure of any task is rethrown in calling thread.
+     */
+    private <V> List<V> run(int taskCount, IntFunction<? extends V> task) throws InterruptedException {
+        if (mapper != null) {
+            final List<Integer> indices = IntStream.range(0, taskCount).boxed().collect(Collectors.toList());
+            final Throwable[] failures = new Throwable[taskCount];
+            final List<V> results = mapper.map(i -> {
+                try {
+                    return task.apply(i);
+                } catch (Throwable e) {
+                    failures[i] = e;
+                    return null;
+                }
+            }, indices);
+            rethrow(failures);
+            return results;
+        }
+        return executor != null ? runPooled(taskCount, task) : runThreads(taskCount, task);
+    }
 
-            InterruptedException exception = null;
-            for (int i = 0; i < threadCount; i++) {
+    private static <V> List<V> runThreads(int threadCount, IntFunction<? extends V> task) throws InterruptedException {
+        final List<Thread> threads = new ArrayList<>(threadCount);
+        final List<V> results = new ArrayList<>(Collections.nCopies(threadCount, null));
+        final Throwable[] failures = new Throwable[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            final int ind = i;
+            threads.add(new Thread(() -> {
                 try {
-                    threads.get(i).join();
-                } catch (InterruptedException e) {
-                    if (exception == null) {
-                        exception = e;
-                    } else exception.addSuppressed(e);
+                    results.set(ind, task.apply(ind));
+                } catch (Throwable e) {
+                    failures[ind] = e;
+                }
+            }));
+            threads.get(ind).start();
+        }
+
+        InterruptedException exception = null;
+        for (int i = 0; i < threadCount; i++) {
+            try {
+                threads.get(i).join();
+            } catch (InterruptedException e) {
+                if (exception == null) {
+                    exception = e;
+                } else exception.addSuppressed(e);
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+        rethrow(failures);
+        return results;
+    }
+
+    /**
+     * Rethrows the first of failures of workers in calling thread, with the others suppressed.
+     * Does nothing, if no worker failed.
+     */
+    private static void rethrow(Throwable[] failures) {
+        Throwable failure = null;
+        for (final Throwable e : failures) {
+            if (e == null) {
+                continue;
+            }
+            if (failure == null) {
+                failure = e;
+            } else failure.addSuppressed(e);
+        }
+        if (failure != null) {
+            rethrow(failure);
+        }
+    }
+
+    /**
+     * Rethrows failure of worker in calling thread.
+     */
+    private static void rethrow(Throwable failure) {
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw failure instanceof RuntimeException ? (RuntimeException) failure : new IllegalStateException(failure);
+    }
+
+    /**
+     * Runs tasks on executor, the first one is run by calling thread.
+     * Calling thread also runs tasks, that executor has not started yet, before waiting for them,
+     * so nested calls from tasks running on the same executor do not deadlock.
+     */
+    private <V> List<V> runPooled(int taskCount, IntFunction<? extends V> task) throws InterruptedException {
+        final List<FutureTask<? extends V>> futures = new ArrayList<>(taskCount - 1);
+        for (int i = 1; i < taskCount; i++) {
+            final int ind = i;
+            final FutureTask<? extends V> future = new FutureTask<>(() -> task.apply(ind));
+            futures.add(future);
+            executor.execute(future);
+        }
+        final List<V> results = new ArrayList<>(taskCount);
+        try {
+            results.add(task.apply(0));
+            for (final FutureTask<? extends V> future : futures) {
+                future.run();
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            rethrow(e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return results;
+    }
+
+    /**
+     * Searches for value satisfying predicate. Every chunk scans its values in blocks of
+     * {@link #CANCELLATION_BLOCK} and stops, once value is found in a chunk preceding it,
+     * or, if order does not matter, in any other chunk.
+     *
+     * @return singleton list of found value or empty list, if there is no such value
+     */
+    private <T> List<T> find(int threadCount, List<? extends T> values, Predicate<? super T> predicate, boolean ordered)
+            throws InterruptedException {
+        final AtomicInteger foundChunk = new AtomicInteger(Integer.MAX_VALUE);
+        return calculate(threadCount, values, (index, x) -> {
+            int scanned = 0;
+            for (final T value : x) {
+                if (scanned++ % CANCELLATION_BLOCK == 0) {
+                    final int found = foundChunk.get();
+                    if (ordered ? found < index : found != Integer.MAX_VALUE) {
+                        break;
+                    }
+                }
+                if (predicate.test(value)) {
+                    foundChunk.accumulateAndGet(index, Math::min);
+                    return Collections.<T>singletonList(value);
                 }
             }
-            if (exception != null) {
-                throw exception;
+            return Collections.<T>emptyList();
+        }, x -> {
+            for (final List<T> found : x) {
+                if (!found.isEmpty()) {
+                    return found;
+                }
             }
+            return Collections.emptyList();
+        });
+    }
+
+    /**
+     * Concatenates materialized chunks into single pre-sized list.
+     * Results of at least {@link #PARALLEL_COPY_THRESHOLD} values are copied by chunks in parallel,
+     * regardless of inline threshold.
+     */
+    private <U> List<U> concat(int threadCount, List<? extends List<? extends U>> chunks) throws InterruptedException {
+        final int[] offsets = new int[chunks.size() + 1];
+        for (int i = 0; i < chunks.size(); i++) {
+            offsets[i + 1] = offsets[i] + chunks.get(i).size();
+        }
+        final int size = offsets[chunks.size()];
+        if (size < PARALLEL_COPY_THRESHOLD || chunks.size() == 1) {
+            final List<U> result = new ArrayList<>(size);
+            chunks.forEach(result::addAll);
+            return result;
         }
-        return reduce.apply(results.stream());
+        final List<U> result = new ArrayList<>(Collections.nCopies(size, null));
+        final int workers = min(threadCount, chunks.size());
+        run(workers, worker -> {
+            for (int i = worker; i < chunks.size(); i += workers) {
+                int offset = offsets[i];
+                for (final U value : chunks.get(i)) {
+                    result.set(offset++, value);
+                }
+            }
+            return null;
+        });
+        return result;
     }
 
     /**
@@ -96,7 +416,7 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public String join(int threadCount, List<?> values) throws InterruptedException {
-        return calculate(threadCount, values, x -> x.map(Object::toString).collect(Collectors.joining()), x -> x.collect(Collectors.joining()));
+        return calculate(threadCount, values, x -> x.stream().map(Object::toString).collect(Collectors.joining()), x -> String.join("", x));
     }
 
     /**
@@ -112,7 +432,16 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> List<T> filter(int threadCount, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return calculate(threadCount, values, x -> x.filter(predicate), x -> x.flatMap(y -> y).collect(Collectors.toList()));
+        final List<List<T>> chunks = calculate(threadCount, values, x -> {
+            final List<T> result = new ArrayList<>();
+            for (final T value : x) {
+                if (predicate.test(value)) {
+                    result.add(value);
+                }
+            }
+            return result;
+        }, ArrayList::new);
+        return concat(threadCount, chunks);
     }
 
     /**
@@ -128,7 +457,14 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T, U> List<U> map(int threadCount, List<? extends T> values, Function<? super T, ? extends U> f) throws InterruptedException {
-        return calculate(threadCount, values, x -> x.map(f), x -> x.flatMap(y -> y).collect(Collectors.toList()));
+        final List<List<U>> chunks = calculate(threadCount, values, x -> {
+            final List<U> result = new ArrayList<>(x.size());
+            for (final T value : x) {
+                result.add(f.apply(value));
+            }
+            return result;
+        }, ArrayList::new);
+        return concat(threadCount, chunks);
     }
 
     /**
@@ -142,11 +478,14 @@ public class IterativeParallelism implements ListIP {
      * @return maximum of given values
      *
      * @throws InterruptedException if executing thread was interrupted.
-     * @throws java.util.NoSuchElementException if not values are given.
+     * @throws NoSuchElementException if not values are given.
      */
     @Override
     public <T> T maximum(int threadCount, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
-        Function<Stream<? extends T>, ? extends T> max = x -> x.max(comparator).orElse(null);
+        if (values.isEmpty()) {
+            throw new NoSuchElementException("No values are given");
+        }
+        Function<List<? extends T>, ? extends T> max = x -> x.stream().max(comparator).orElse(null);
         return calculate(threadCount, values, max, max);
     }
 
@@ -161,11 +500,14 @@ public class IterativeParallelism implements ListIP {
      * @return minimum of given values
      *
      * @throws InterruptedException if executing thread was interrupted.
-     * @throws java.util.NoSuchElementException if not values are given.
+     * @throws NoSuchElementException if not values are given.
      */
     @Override
     public <T> T minimum(int threadCount, List<? extends T> values, Comparator<? super T> comparator) throws InterruptedException {
-        Function<Stream<? extends T>, ? extends T> min = x -> x.min(comparator).orElse(null);
+        if (values.isEmpty()) {
+            throw new NoSuchElementException("No values are given");
+        }
+        Function<List<? extends T>, ? extends T> min = x -> x.stream().min(comparator).orElse(null);
         return calculate(threadCount, values, min, min);
     }
 
@@ -183,7 +525,7 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean all(int threadCount, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return calculate(threadCount, values, x -> x.allMatch(predicate), x -> x.allMatch(y -> y));
+        return find(threadCount, values, predicate.negate(), false).isEmpty();
     }
 
     /**
@@ -200,6 +542,42 @@ public class IterativeParallelism implements ListIP {
      */
     @Override
     public <T> boolean any(int threadCount, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
-        return calculate(threadCount, values, x -> x.anyMatch(predicate), x -> x.anyMatch(y -> y));
+        return !find(threadCount, values, predicate, false).isEmpty();
+    }
+
+    /**
+     * Returns first value satisfying predicate.
+     * Once value is found, chunks following the one containing it stop scanning.
+     *
+     * @param threadCount number or concurrent threads.
+     * @param values values to search.
+     * @param predicate test predicate.
+     * @param <T> value type.
+     *
+     * @return first value satisfying predicate or empty {@link Optional}, if there is no such value.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     * @throws NullPointerException if found value is {@code null}.
+     */
+    public <T> Optional<T> findFirst(int threadCount, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        return this.<T>find(threadCount, values, predicate, true).stream().findFirst();
+    }
+
+    /**
+     * Returns any value satisfying predicate.
+     * Once value is found, all other chunks stop scanning.
+     *
+     * @param threadCount number or concurrent threads.
+     * @param values values to search.
+     * @param predicate test predicate.
+     * @param <T> value type.
+     *
+     * @return some value satisfying predicate or empty {@link Optional}, if there is no such value.
+     *
+     * @throws InterruptedException if executing thread was interrupted.
+     * @throws NullPointerException if found value is {@code null}.
+     */
+    public <T> Optional<T> findAny(int threadCount, List<? extends T> values, Predicate<? super T> predicate) throws InterruptedException {
+        return this.<T>find(threadCount, values, predicate, false).stream().findFirst();
     }
 }
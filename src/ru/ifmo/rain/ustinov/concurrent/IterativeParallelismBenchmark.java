@@ -0,0 +1,134 @@
+package ru.ifmo.rain.ustinov.concurrent;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Measures scaling of {@link IterativeParallelism#map} and {@link IterativeParallelism#filter}
+ * with expensive functions from one to all available cores,
+ * and rate of cheap {@link IterativeParallelism#maximum} calls on medium-sized lists
+ * with new threads, shared pool and inline execution, and work saved by short-circuit
+ * operations with expensive predicate, and static against dynamic scheduling with skewed costs.
+ */
+public class IterativeParallelismBenchmark {
+    private static final int WARMUP = 2;
+    private static final int MEASURE = 5;
+    private static final int RANGES_PER_THREAD = 16;
+
+    @FunctionalInterface
+    private interface Operation {
+        List<?> apply(int threads) throws InterruptedException;
+    }
+
+    /**
+     * Expensive function of given value.
+     */
+    private static double work(int value, int iterations) {
+        double result = value;
+        for (int i = 0; i < iterations; i++) {
+            result = Math.sin(result) + value;
+        }
+        return result;
+    }
+
+    private static double rate(IterativeParallelism parallelism, int threads, List<Integer> values) throws InterruptedException {
+        final long end = System.nanoTime() + 1_000_000_000L;
+        long calls = 0;
+        for (; System.nanoTime() < end; calls++) {
+            parallelism.maximum(threads, values, Integer::compare);
+        }
+        return calls;
+    }
+
+    private static double measure(Operation operation, int threads, List<?> expected) throws InterruptedException {
+        for (int i = 0; i < WARMUP; i++) {
+            operation.apply(threads);
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURE; i++) {
+            final long start = System.nanoTime();
+            final List<?> result = operation.apply(threads);
+            total += System.nanoTime() - start;
+            if (!result.equals(expected)) {
+                throw new AssertionError("Parallel result differs from sequential one");
+            }
+        }
+        return total / 1e6 / MEASURE;
+    }
+
+    private static void shortCircuit(String name, LongAdder tests, Operation operation, int threads, List<?> expected)
+            throws InterruptedException {
+        tests.reset();
+        final double time = measure(operation, threads, expected);
+        System.out.printf("%s %10.1f ms %12d predicate calls per operation%n", name, time, tests.sum() / (WARMUP + MEASURE));
+    }
+
+    /**
+     * Runs benchmark.
+     * Usage: {@code IterativeParallelismBenchmark [size [maxThreads [iterations]]]},
+     * where iterations is cost of function per element.
+     *
+     * @param args command line arguments
+     * @throws InterruptedException if benchmark was interrupted
+     */
+    public static void main(String[] args) throws InterruptedException {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        final List<Integer> values = IntStream.range(0, size).boxed().collect(Collectors.toList());
+        final IterativeParallelism parallelism = new IterativeParallelism();
+
+        final Function<Integer, Double> f = value -> work(value, iterations);
+        final List<Double> mapped = values.stream().map(f).collect(Collectors.toList());
+        final List<Integer> filtered = values.stream().filter(value -> f.apply(value) > value).collect(Collectors.toList());
+
+        System.out.printf("%d values, %d iterations per value%n", size, iterations);
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(2 * threads, maxThreads) : threads + 1) {
+            System.out.printf("map    %2d threads %10.1f ms%n", threads,
+                    measure(t -> parallelism.map(t, values, f), threads, mapped));
+            System.out.printf("filter %2d threads %10.1f ms%n", threads,
+                    measure(t -> parallelism.filter(t, values, value -> f.apply(value) > value), threads, filtered));
+        }
+
+        final int target = size / 2;
+        final LongAdder tests = new LongAdder();
+        final Predicate<Integer> p = value -> {
+            tests.increment();
+            return f.apply(value) >= value - 1 && value == target;
+        };
+        System.out.printf("short-circuit operations finding value %d of %d, %d threads%n", target, size, maxThreads);
+        shortCircuit("any      ", tests, t -> List.of(parallelism.any(t, values, p)), maxThreads, List.of(true));
+        shortCircuit("all      ", tests, t -> List.of(parallelism.all(t, values, p.negate())), maxThreads, List.of(false));
+        shortCircuit("findFirst", tests, t -> List.of(parallelism.findFirst(t, values, p)), maxThreads, List.of(Optional.of(target)));
+        shortCircuit("findAny  ", tests, t -> List.of(parallelism.findAny(t, values, p)), maxThreads, List.of(Optional.of(target)));
+
+        final Function<Integer, Double> skewed = value -> work(value, value < size / 8 ? 8 * iterations : iterations / 8);
+        final List<Double> skewedMapped = values.stream().map(skewed).collect(Collectors.toList());
+        final List<Integer> skewedFiltered = values.stream().filter(value -> skewed.apply(value) > value).collect(Collectors.toList());
+        final IterativeParallelism dynamic = IterativeParallelism.withDynamicScheduling(RANGES_PER_THREAD);
+        System.out.printf("skewed costs: first %d values are %d times more expensive, %d threads%n", size / 8, 64, maxThreads);
+        System.out.printf("map    static %10.1f ms, dynamic %10.1f ms%n",
+                measure(t -> parallelism.map(t, values, skewed), maxThreads, skewedMapped),
+                measure(t -> dynamic.map(t, values, skewed), maxThreads, skewedMapped));
+        System.out.printf("filter static %10.1f ms, dynamic %10.1f ms%n",
+                measure(t -> parallelism.filter(t, values, value -> skewed.apply(value) > value), maxThreads, skewedFiltered),
+                measure(t -> dynamic.filter(t, values, value -> skewed.apply(value) > value), maxThreads, skewedFiltered));
+
+        final List<Integer> medium = values.subList(0, Math.min(size, 1_000));
+        final IterativeParallelism pooled = IterativeParallelism.withSharedPool(0);
+        final IterativeParallelism inline = IterativeParallelism.withSharedPool(medium.size() + 1);
+        for (int i = 0; i < WARMUP; i++) {
+            rate(parallelism, maxThreads, medium);
+            rate(pooled, maxThreads, medium);
+            rate(inline, maxThreads, medium);
+        }
+        System.out.printf("maximum of %d values, %d threads: %10.0f calls/s new threads, %10.0f calls/s pooled, %10.0f calls/s inline%n",
+                medium.size(), maxThreads, rate(parallelism, maxThreads, medium),
+                rate(pooled, maxThreads, medium), rate(inline, maxThreads, medium));
+    }
+}
@@ -0,0 +1,421 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates class file with implementation of given class or interface without compiler. <p>
+ * Generated class has the same semantics as code generated by {@link ClassWriter}:
+ * abstract methods return default values and constructors call super constructors
+ * with the same signatures. Method bodies are straight-line code, so class file of version 52
+ * needs no stack map frames. Constant pool is accumulated in writer,
+ * so every writer generates single class.
+ */
+class BytecodeWriter {
+    /**
+     * Class file version, that does not require stack map frames for straight-line code.
+     */
+    private static final int VERSION = 52;
+
+    /**
+     * Access flags of generated class: {@code ACC_PUBLIC | ACC_SUPER}.
+     */
+    private static final int CLASS_ACCESS = 0x0021;
+
+    /**
+     * Method access flags copied from implemented methods and constructors.
+     */
+    private static final int METHOD_ACCESS = Modifier.PUBLIC | Modifier.PROTECTED;
+
+    /**
+     * Bytecode instruction {@code aload_0}.
+     */
+    private static final int ALOAD_0 = 0x2a;
+
+    /**
+     * Bytecode instruction {@code invokespecial}.
+     */
+    private static final int INVOKESPECIAL = 0xb7;
+
+    /**
+     * Bytecode instruction {@code return}.
+     */
+    private static final int RETURN = 0xb1;
+
+    /**
+     * Constant pool entries by their keys.
+     */
+    private final Map<String, Integer> constants = new HashMap<>();
+
+    /**
+     * Serialized constant pool entries.
+     */
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+    /**
+     * Number of constant pool slots used, including slot {@code 0}.
+     */
+    private int poolSize = 1;
+
+    /**
+     * Returns internal name of given class.
+     *
+     * @param clazz class or interface
+     * @return binary name with slashes instead of dots
+     */
+    private static String getInternalName(Class<?> clazz) {
+        return clazz.getName().replace('.', '/');
+    }
+
+    /**
+     * Returns type descriptor of given class.
+     *
+     * @param clazz type
+     * @return field descriptor of given type
+     */
+    private static String getDescriptor(Class<?> clazz) {
+        if (clazz.isArray()) {
+            return clazz.getName().replace('.', '/');
+        }
+        if (!clazz.isPrimitive()) {
+            return "L" + getInternalName(clazz) + ";";
+        }
+        if (clazz == void.class) {
+            return "V";
+        } else if (clazz == boolean.class) {
+            return "Z";
+        } else if (clazz == byte.class) {
+            return "B";
+        } else if (clazz == char.class) {
+            return "C";
+        } else if (clazz == short.class) {
+            return "S";
+        } else if (clazz == int.class) {
+            return "I";
+        } else if (clazz == long.class) {
+            return "J";
+        } else if (clazz == float.class) {
+            return "F";
+        }
+        return "D";
+    }
+
+    /**
+     * Returns descriptor of parameters of given method or constructor.
+     *
+     * @param executable method or constructor
+     * @return descriptors of parameter types, covered in brackets
+     */
+    private static String getParametersDescriptor(Executable executable) {
+        final StringBuilder sb = new StringBuilder("(");
+        for (final Class<?> parameter : executable.getParameterTypes()) {
+            sb.append(getDescriptor(parameter));
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * Returns number of local variable slots occupied by value of given type.
+     *
+     * @param clazz type
+     * @return {@code 2} for {@code long} and {@code double}, {@code 0} for {@code void}, {@code 1} otherwise
+     */
+    private static int getSlots(Class<?> clazz) {
+        if (clazz == long.class || clazz == double.class) {
+            return 2;
+        }
+        return clazz == void.class ? 0 : 1;
+    }
+
+    /**
+     * Returns offset of typed bytecode instruction for given type: {@code 0} for int-like types,
+     * {@code 1} for {@code long}, {@code 2} for {@code float}, {@code 3} for {@code double}
+     * and {@code 4} for references.
+     *
+     * @param clazz type
+     * @return offset of instruction from its {@code int} variant
+     */
+    private static int getTypeOffset(Class<?> clazz) {
+        if (!clazz.isPrimitive()) {
+            return 4;
+        } else if (clazz == long.class) {
+            return 1;
+        } else if (clazz == float.class) {
+            return 2;
+        } else if (clazz == double.class) {
+            return 3;
+        }
+        return 0;
+    }
+
+    /**
+     * Adds constant to constant pool, unless it is already there.
+     *
+     * @param key   unique key of constant
+     * @param slots number of pool slots occupied by constant
+     * @param write writes constant entry
+     * @return index of constant
+     */
+    private int constant(String key, int slots, IOConsumer<DataOutputStream> write) {
+        final Integer index = constants.get(key);
+        if (index != null) {
+            return index;
+        }
+        try {
+            write.accept(new DataOutputStream(pool));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        constants.put(key, poolSize);
+        poolSize += slots;
+        return poolSize - slots;
+    }
+
+    /**
+     * Consumer of values that may throw {@link IOException}.
+     *
+     * @param <T> type of values
+     */
+    @FunctionalInterface
+    private interface IOConsumer<T> {
+        /**
+         * Consumes value.
+         *
+         * @param value value to consume
+         * @throws IOException if an I/O error occurs
+         */
+        void accept(T value) throws IOException;
+    }
+
+    /**
+     * Adds {@code CONSTANT_Utf8} entry.
+     *
+     * @param value string value
+     * @return index of constant
+     */
+    private int utf8(String value) {
+        return constant("U" + value, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    /**
+     * Adds {@code CONSTANT_Class} entry.
+     *
+     * @param internalName internal name of class
+     * @return index of constant
+     */
+    private int classConstant(String internalName) {
+        final int name = utf8(internalName);
+        return constant("C" + internalName, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(name);
+        });
+    }
+
+    /**
+     * Adds {@code CONSTANT_Methodref} entry.
+     *
+     * @param owner      internal name of class declaring method
+     * @param name       method name
+     * @param descriptor method descriptor
+     * @return index of constant
+     */
+    private int methodConstant(String owner, String name, String descriptor) {
+        final int ownerIndex = classConstant(owner);
+        final int nameIndex = utf8(name);
+        final int descriptorIndex = utf8(descriptor);
+        final int nameAndType = constant("N" + name + descriptor, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant("M" + owner + "." + name + descriptor, 1, out -> {
+            out.writeByte(10);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    /**
+     * Writes method with given signature and body.
+     *
+     * @param out        output of methods
+     * @param executable implemented method or constructor
+     * @param name       method name
+     * @param descriptor method descriptor
+     * @param code       bytecode of method body
+     * @param maxStack   maximal operand stack depth
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeMethod(DataOutputStream out, Executable executable, String name, String descriptor,
+                             byte[] code, int maxStack) throws IOException {
+        int maxLocals = 1;
+        for (final Class<?> parameter : executable.getParameterTypes()) {
+            maxLocals += getSlots(parameter);
+        }
+        final Class<?>[] exceptions = executable.getExceptionTypes();
+
+        out.writeShort(executable.getModifiers() & METHOD_ACCESS);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(descriptor));
+        out.writeShort(exceptions.length == 0 ? 1 : 2);
+
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+
+        if (exceptions.length > 0) {
+            out.writeShort(utf8("Exceptions"));
+            out.writeInt(2 + 2 * exceptions.length);
+            out.writeShort(exceptions.length);
+            for (final Class<?> exception : exceptions) {
+                out.writeShort(classConstant(getInternalName(exception)));
+            }
+        }
+    }
+
+    /**
+     * Writes method returning default value.
+     *
+     * @param out    output of methods
+     * @param method implemented method
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeMethod(DataOutputStream out, Method method) throws IOException {
+        final Class<?> returnType = method.getReturnType();
+        final byte[] code;
+        if (returnType == void.class) {
+            code = new byte[]{(byte) RETURN};
+        } else {
+            final int offset = getTypeOffset(returnType);
+            // iconst_0, lconst_0, fconst_0, dconst_0, aconst_null followed by ireturn .. areturn
+            final int[] zeros = {0x03, 0x09, 0x0b, 0x0e, 0x01};
+            code = new byte[]{(byte) zeros[offset], (byte) (0xac + offset)};
+        }
+        writeMethod(out, method, method.getName(), getParametersDescriptor(method) + getDescriptor(returnType),
+                code, getSlots(returnType));
+    }
+
+    /**
+     * Writes constructor calling super constructor with the same arguments.
+     *
+     * @param out         output of methods
+     * @param constructor implemented constructor
+     * @param superName   internal name of superclass
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeConstructor(DataOutputStream out, Constructor<?> constructor, String superName) throws IOException {
+        final String descriptor = getParametersDescriptor(constructor) + "V";
+        final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(ALOAD_0);
+        int slot = 1;
+        for (final Class<?> parameter : constructor.getParameterTypes()) {
+            // iload, lload, fload, dload, aload
+            code.write(0x15 + getTypeOffset(parameter));
+            code.write(slot);
+            slot += getSlots(parameter);
+        }
+        final int method = methodConstant(superName, "<init>", descriptor);
+        code.write(INVOKESPECIAL);
+        code.write(method >> 8);
+        code.write(method);
+        code.write(RETURN);
+        writeMethod(out, constructor, "<init>", descriptor, code.toByteArray(), slot);
+    }
+
+    /**
+     * Generates class file with implementation of given class.
+     * Resulted class is public class that derives given class
+     * and it has name of given class name with "Impl" suffix.
+     *
+     * @param clazz class that needs to be implemented
+     * @return bytes of class file
+     * @throws ImplerException if all constructors are private in given class.
+     */
+    byte[] getClassBytes(Class<?> clazz) throws ImplerException {
+        final String packageName = clazz.getPackageName();
+        return getClassBytes(clazz, (packageName.isEmpty() ? "" : packageName + ".") + clazz.getSimpleName() + "Impl");
+    }
+
+    /**
+     * Generates class file with implementation of given class with given name.
+     *
+     * @param clazz     class that needs to be implemented
+     * @param className binary name of generated class
+     * @return bytes of class file
+     * @throws ImplerException if all constructors are private in given class.
+     */
+    byte[] getClassBytes(Class<?> clazz, String className) throws ImplerException {
+        final String name = className.replace('.', '/');
+        final String superName = clazz.isInterface() ? "java/lang/Object" : getInternalName(clazz);
+
+        final List<Constructor<?>> constructors = new ArrayList<>();
+        if (clazz.isInterface()) {
+            try {
+                constructors.add(Object.class.getConstructor());
+            } catch (NoSuchMethodException e) {
+                throw new AssertionError(e);
+            }
+        } else {
+            constructors.addAll(TypeMetadata.of(clazz).getConstructors());
+            if (constructors.isEmpty()) {
+                throw new ImplerException("All constructors are private");
+            }
+        }
+        final List<Method> methods = TypeMetadata.of(clazz).getAbstractMethods();
+
+        try {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(body);
+            out.writeShort(CLASS_ACCESS);
+            out.writeShort(classConstant(name));
+            out.writeShort(classConstant(superName));
+            if (clazz.isInterface()) {
+                out.writeShort(1);
+                out.writeShort(classConstant(getInternalName(clazz)));
+            } else {
+                out.writeShort(0);
+            }
+            out.writeShort(0);
+            out.writeShort(constructors.size() + methods.size());
+            for (final Constructor<?> constructor : constructors) {
+                writeConstructor(out, constructor, superName);
+            }
+            for (final Method method : methods) {
+                writeMethod(out, method);
+            }
+            out.writeShort(0);
+
+            final ByteArrayOutputStream result = new ByteArrayOutputStream();
+            final DataOutputStream header = new DataOutputStream(result);
+            header.writeInt(0xCAFEBABE);
+            header.writeShort(0);
+            header.writeShort(VERSION);
+            header.writeShort(poolSize);
+            pool.writeTo(result);
+            body.writeTo(result);
+            return result.toByteArray();
+        } catch (IOException e) {
+            throw new ImplerException("Can't generate class file", e);
+        }
+    }
+}
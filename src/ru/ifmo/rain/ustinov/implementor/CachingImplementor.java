@@ -0,0 +1,318 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import info.kgeorgiy.java.advanced.implementor.JarImpler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link Implementor} with persistent cache of generated jar files. <p>
+ * Jar files are stored in cache directory under names derived from fingerprint of implemented type:
+ * SHA-256 of generator version, derived from class files of generators, backend, compression level
+ * and signatures of all methods and constructors inspected
+ * by generators. Cache entries are written to temporary files and atomically moved in place,
+ * so several processes may share one directory. Least recently used entries are removed
+ * when total size of cache exceeds given limit.
+ *
+ * @author Artem Ustinov
+ * @see Implementor#implementJar(Class, Path)
+ */
+public class CachingImplementor implements JarImpler {
+    /**
+     * Classes determining generated jar files.
+     */
+    private static final List<Class<?>> GENERATORS = List.of(Implementor.class, ClassWriter.class,
+            BytecodeWriter.class, TypeMetadata.class, MemoryCompiler.class, JarWriter.class);
+
+    /**
+     * Version of generated code: digest of class files of {@link #GENERATORS} and Java version,
+     * so entries written by other versions of generators are never reused.
+     */
+    private static final String GENERATOR_VERSION = getGeneratorVersion();
+
+    /**
+     * Suffix of cache entries.
+     */
+    private static final String SUFFIX = ".jar";
+
+    /**
+     * Prefix of temporary files.
+     */
+    private static final String TEMP_PREFIX = "entry";
+
+    /**
+     * Suffix of temporary files.
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Age of temporary file in milliseconds, after that it is considered orphaned
+     * by crashed process and is removed.
+     */
+    private static final long TEMP_MAX_AGE = 60 * 60 * 1000;
+
+    /**
+     * Implementor generating missing entries.
+     */
+    private final Implementor implementor;
+
+    /**
+     * Cache directory.
+     */
+    private final Path directory;
+
+    /**
+     * Maximal total size of cache entries in bytes.
+     */
+    private final long maxSize;
+
+    /**
+     * Creates implementor with cache in given directory.
+     *
+     * @param implementor implementor generating missing entries
+     * @param directory   cache directory, created if missing
+     * @param maxSize     maximal total size of cache entries in bytes
+     * @throws ImplerException if cache directory can not be created
+     */
+    public CachingImplementor(Implementor implementor, Path directory, long maxSize) throws ImplerException {
+        if (implementor == null || directory == null) {
+            throw new ImplerException("Arguments must be non-null");
+        }
+        if (maxSize < 0) {
+            throw new ImplerException("Cache size must be non-negative");
+        }
+        this.implementor = implementor;
+        this.directory = directory;
+        this.maxSize = maxSize;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new ImplerException("Can't create cache directory " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates .java file with implementation of given class or interface.
+     * Sources are not cached.
+     *
+     * @param aClass class or interface, implementation of that will be generated.
+     * @param path   path to directory, where generated file will be created.
+     * @throws ImplerException if implementation can not be generated
+     * @see Implementor#implement(Class, Path)
+     */
+    @Override
+    public void implement(Class<?> aClass, Path path) throws ImplerException {
+        implementor.implement(aClass, path);
+    }
+
+    /**
+     * Creates .jar file with implementation of given class or interface,
+     * reusing cached one if it exists.
+     *
+     * @param aClass class or interface, implementation of that will be generated.
+     * @param path   path to file, where generated file will be created.
+     * @throws ImplerException if implementation can not be generated or cache can not be accessed
+     * @see Implementor#implementJar(Class, Path)
+     */
+    @Override
+    public void implementJar(Class<?> aClass, Path path) throws ImplerException {
+        if (aClass == null || path == null) {
+            throw new ImplerException("Arguments must be non-null");
+        }
+        final Path entry = directory.resolve(getFingerprint(aClass) + SUFFIX);
+        try {
+            if (path.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+            }
+            if (copyEntry(entry, path)) {
+                return;
+            }
+            final Path temp = Files.createTempFile(directory, TEMP_PREFIX, TEMP_SUFFIX);
+            try {
+                implementor.implementJar(aClass, temp);
+                Files.copy(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ignored) {
+                // Same entry has just been written by other process.
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            evict();
+        } catch (IOException e) {
+            throw new ImplerException("Can't access cache " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copies cache entry to given path and marks it as recently used.
+     *
+     * @param entry cache entry
+     * @param path  destination path
+     * @return {@code true} if entry exists, {@code false} otherwise
+     * @throws IOException if an I/O error occurs
+     */
+    private static boolean copyEntry(Path entry, Path path) throws IOException {
+        try {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            Files.copy(entry, path, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch (NoSuchFileException e) {
+            // Entry is missing or has just been evicted by other process.
+            return false;
+        }
+    }
+
+    /**
+     * Removes least recently used entries until total size of cache does not exceed maximal size,
+     * and temporary files left by crashed processes.
+     * Files removed concurrently by other processes are skipped.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void evict() throws IOException {
+        final List<Map.Entry<Path, long[]>> entries = new ArrayList<>();
+        final long now = System.currentTimeMillis();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (final Path file : (Iterable<Path>) files::iterator) {
+                final String name = file.getFileName().toString();
+                try {
+                    if (name.endsWith(SUFFIX)) {
+                        entries.add(Map.entry(file, new long[]{
+                                Files.getLastModifiedTime(file).toMillis(), Files.size(file)
+                        }));
+                    } else if (name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX)
+                            && now - Files.getLastModifiedTime(file).toMillis() > TEMP_MAX_AGE) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (NoSuchFileException ignored) {
+                    // Removed by other process.
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long size = entries.stream().mapToLong(entry -> entry.getValue()[1]).sum();
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue()[0]));
+        for (final Map.Entry<Path, long[]> entry : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            Files.deleteIfExists(entry.getKey());
+            size -= entry.getValue()[1];
+        }
+    }
+
+    /**
+     * Computes version of generated code.
+     *
+     * @return hexadecimal SHA-256 digest of class files of generators and Java version
+     */
+    private static String getGeneratorVersion() {
+        final MessageDigest digest = newDigest();
+        digest.update(System.getProperty("java.version").getBytes(StandardCharsets.UTF_8));
+        for (final Class<?> generator : GENERATORS) {
+            try (InputStream in = generator.getResourceAsStream(generator.getSimpleName() + ".class")) {
+                if (in == null) {
+                    throw new IllegalStateException("Class file of " + generator.getName() + " is not found");
+                }
+                digest.update(in.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Creates SHA-256 digest.
+     *
+     * @return new digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns hexadecimal representation of given bytes.
+     *
+     * @param bytes bytes
+     * @return lowercase hexadecimal string
+     */
+    private static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(2 * bytes.length);
+        for (final byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns signature of given method or constructor.
+     *
+     * @param executable method or constructor
+     * @return modifiers, return type, name, parameter types and exception types
+     */
+    private static String getSignature(Executable executable) {
+        return executable.getModifiers() + " "
+                + (executable instanceof Method ? ((Method) executable).getReturnType().getName() : "<init>") + " "
+                + executable.getDeclaringClass().getName() + "." + executable.getName()
+                + Arrays.stream(executable.getParameterTypes()).map(Class::getName).collect(Collectors.joining(",", "(", ")"))
+                + Arrays.stream(executable.getExceptionTypes()).map(Class::getName).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Returns fingerprint of implementation of given class. <p>
+     * Fingerprint covers generator version, backend, compression level, implemented type and signatures
+     * of its methods, methods of its superclasses and its constructors.
+     *
+     * @param aClass implemented class or interface
+     * @return hexadecimal SHA-256 digest
+     */
+    private String getFingerprint(Class<?> aClass) {
+        final TreeSet<String> signatures = new TreeSet<>();
+        for (Class<?> c = aClass; c != null; c = c.getSuperclass()) {
+            for (final Method method : c.getMethods()) {
+                signatures.add(getSignature(method));
+            }
+            for (final Method method : c.getDeclaredMethods()) {
+                signatures.add(getSignature(method));
+            }
+        }
+        for (final Constructor<?> constructor : aClass.getDeclaredConstructors()) {
+            signatures.add(getSignature(constructor));
+        }
+        final MessageDigest digest = newDigest();
+        digest.update((GENERATOR_VERSION + " " + implementor.getBackend() + " " + implementor.getCompressionLevel() + " "
+                + aClass.getModifiers() + " " + aClass.getName() + "\n").getBytes(StandardCharsets.UTF_8));
+        for (final String signature : signatures) {
+            digest.update((signature + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+}
@@ -2,17 +2,20 @@ package ru.ifmo.rain.ustinov.implementor;
 
 import info.kgeorgiy.java.advanced.implementor.ImplerException;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Executable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.StringJoiner;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
- * Generates code with implementation of given class or interface.
+ * Generates code with implementation of given class or interface. <p>
+ * Code is written directly to given {@link Appendable}, characters
+ * out of ASCII range are escaped on the fly. Methods and constructors
+ * are taken from shared {@link TypeMetadata}.
  */
 class ClassWriter {
     /**
@@ -21,29 +24,98 @@ class ClassWriter {
     private static final String INDENT = "    ";
 
     /**
-     * Generates code with type name of given class.
-     *
-     * @return full type name with packages or simple
-     * type if it is primitive
+     * Line separator of generated code.
      */
-    private String getTypeCode(Class<?> clazz) {
-        if (clazz.isPrimitive()) {
-            return clazz.getSimpleName();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * Number of buckets in latency histograms of decorators:
+     * bucket {@code i} counts calls that took from {@code 2^(i-1)} to {@code 2^i - 1} nanoseconds.
+     */
+    private static final int LATENCY_BUCKETS = 64;
+
+    /**
+     * Name of {@link java.util.concurrent.atomic.LongAdder} used in decorators.
+     */
+    private static final String LONG_ADDER = "java.util.concurrent.atomic.LongAdder";
+
+    /**
+     * Hexadecimal digits used in unicode escapes.
+     */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * {@link Appendable} that replaces characters out of ASCII range with unicode escapes.
+     */
+    private static class UnicodeEscaper implements Appendable {
+        /**
+         * Destination of escaped characters.
+         */
+        private final Appendable out;
+
+        /**
+         * Creates escaper writing to given destination.
+         *
+         * @param out destination of escaped characters
+         */
+        UnicodeEscaper(Appendable out) {
+            this.out = out;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            int from = start;
+            for (int i = start; i < end; i++) {
+                if (csq.charAt(i) >= 128) {
+                    out.append(csq, from, i);
+                    append(csq.charAt(i));
+                    from = i + 1;
+                }
+            }
+            out.append(csq, from, end);
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            if (c < 128) {
+                out.append(c);
+            } else {
+                out.append('\\').append('u')
+                        .append(HEX_DIGITS[c >> 12]).append(HEX_DIGITS[(c >> 8) & 0xF])
+                        .append(HEX_DIGITS[(c >> 4) & 0xF]).append(HEX_DIGITS[c & 0xF]);
+            }
+            return this;
         }
-        return clazz.getCanonicalName();
     }
 
     /**
-     * Generates paddings for strings.
+     * Writes type name of given class.
      *
-     * @return padding of {@link #INDENT} symbols
+     * @param clazz type to write
+     * @param out   destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getIndentation(int padding) {
-        StringBuilder sb = new StringBuilder();
+    private void writeType(Class<?> clazz, Appendable out) throws IOException {
+        out.append(clazz.isPrimitive() ? clazz.getSimpleName() : clazz.getCanonicalName());
+    }
+
+    /**
+     * Writes paddings for strings.
+     *
+     * @param padding number of {@link #INDENT} symbols
+     * @param out     destination of code
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeIndentation(int padding, Appendable out) throws IOException {
         for (int i = 0; i < padding; i++) {
-            sb.append(INDENT);
+            out.append(INDENT);
         }
-        return sb.toString();
     }
 
     /**
@@ -60,6 +132,7 @@ class ClassWriter {
     /**
      * generates a standard value of given class.
      *
+     * @param clazz returned type
      * @return <ul>
      * <li>false for {@link Boolean}</li>
      * <li>empty string for void</li>
@@ -81,208 +154,220 @@ class ClassWriter {
     }
 
     /**
-     * Generates name of given class used in arguments of methods and constructors.
+     * Writes name of given class used in arguments of methods and constructors.
      *
+     * @param clazz  type of argument
      * @param number a suffix to generated name.
-     * @return name of given class concatenated with given number.
+     * @param out    destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String generateArgumentName(Class<?> clazz, int number) {
+    private void writeArgumentName(Class<?> clazz, int number, Appendable out) throws IOException {
+        final String name = clazz.getSimpleName();
         if (clazz.isPrimitive()) {
-            return clazz.getSimpleName().substring(0, 1) + number;
+            out.append(name.charAt(0));
+        } else {
+            out.append(Character.toLowerCase(name.charAt(0)));
+            int from = 1;
+            for (int i = name.indexOf("[]", from); i >= 0; i = name.indexOf("[]", from)) {
+                out.append(name, from, i).append('s');
+                from = i + 2;
+            }
+            out.append(name, from, name.length());
         }
-        return Character.toLowerCase(clazz.getSimpleName().charAt(0)) + clazz.getSimpleName().substring(1).replace("[]", "s") + number;
+        out.append(Integer.toString(number));
     }
 
     /**
-     * Generates implementation body of given method or constructor.
+     * Writes implementation body of given method or constructor.
      *
      * @param executable method or constructor that needs to be generated
-     * @return valid code of given method or constructor.
+     * @param out        destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getExecitableImplementationCode(Executable executable) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(getIndentation(2));
+    private void writeExecutableImplementation(Executable executable, Appendable out) throws IOException {
+        writeIndentation(2, out);
         if (executable instanceof Method) {
-            sb.append("return");
-            sb.append(getReturnValue(((Method) executable).getReturnType()));
+            out.append("return");
+            out.append(getReturnValue(((Method) executable).getReturnType()));
         } else {
-            sb.append("super");
-            sb.append(getArgumentsCode(executable, false));
+            out.append("super");
+            writeArguments(executable, false, out);
         }
-        sb.append(";").append(System.lineSeparator());
-        return sb.toString();
+        out.append(";").append(LINE_SEPARATOR);
     }
 
     /**
-     * Generates code for parameters of given method or constructor.
+     * Writes parameters of given method or constructor, covered in brackets, separated by commas.
+     * If showType is true then arguments are leaded with their types
+     * else only generated names are written.
      *
      * @param executable method or constructor that needs to be generated
-     * @param showType   flag that determines that return type will be generated
-     * @return a string with listed arguments of given method or constructor,
-     * covered in brackets, separated by commas.
-     * if showType is true then arguments are leaded with their types
-     * else only generated names are generated.
+     * @param showType   flag that determines that types of arguments will be generated
+     * @param out        destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getArgumentsCode(Executable executable, boolean showType) {
-        StringJoiner sj = new StringJoiner(", ", "(", ")");
+    private void writeArguments(Executable executable, boolean showType, Appendable out) throws IOException {
+        out.append('(');
         int i = 0;
         for (Class<?> c : executable.getParameterTypes()) {
-            sj.add((showType ? getTypeCode(c) + " " : "") + generateArgumentName(c, i++));
+            if (i > 0) {
+                out.append(", ");
+            }
+            if (showType) {
+                writeType(c, out);
+                out.append(' ');
+            }
+            writeArgumentName(c, i++, out);
         }
-        return sj.toString();
+        out.append(')');
     }
 
     /**
-     * Generates a code with import string of given package.
+     * Writes package declaration of given package, unless it is unnamed.
      *
-     * @param aPackage package that need to be imported
-     * @return import string of given package
-     * or empty string if package is empty.
+     * @param packageName name of package of generated class
+     * @param out         destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getPackageCode(Package aPackage) {
-        if (aPackage.getName().isEmpty()) {
-            return "";
+    private void writePackage(String packageName, Appendable out) throws IOException {
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";").append(LINE_SEPARATOR);
         }
-        return "package " +
-                aPackage.getName() +
-                ";" +
-                System.lineSeparator();
     }
 
     /**
-     * Generates a declaration code of given class. <p>
+     * Writes declaration of public class that derives given class. <p>
      * Resulted class has name of given class with "Impl" suffix.
      *
      * @param clazz a class that needs to be generated
-     * @return generates declaration of public class that derives given.
+     * @param out   destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getClassDeclarationCode(Class<?> clazz) {
-        return "public class " + clazz.getSimpleName() + "Impl " + (clazz.isInterface() ? "implements " : "extends ") + clazz.getSimpleName() + " ";
+    private void writeClassDeclaration(Class<?> clazz, Appendable out) throws IOException {
+        out.append("public class ").append(clazz.getSimpleName()).append("Impl ")
+                .append(clazz.isInterface() ? "implements " : "extends ")
+                .append(clazz.getSimpleName()).append(" ");
     }
 
     /**
-     * Adds implementation codes of abstract methods of given class to given hashSet.
+     * Writes suffix to declaration of method with throw exception string,
+     * if given method throws exceptions.
      *
-     * @param clazz       Class that needs to be generated
-     * @param methodCodes {@link HashSet} of distinct abstract methods
-     *                    that contains codes of these methods
+     * @param executable executable that needs to be generated
+     * @param out        destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private void addAbstractMethods(Class<?> clazz, Set<String> methodCodes) {
-        if (clazz == null) {
-            return;
-        }
-        for (var method : clazz.getMethods()) {
-            if (Modifier.isAbstract(method.getModifiers())) {
-                methodCodes.add(getExecutableCode(method));
-            }
+    private void writeExceptions(Executable executable, Appendable out) throws IOException {
+        final Class<?>[] exceptions = executable.getExceptionTypes();
+        for (int i = 0; i < exceptions.length; i++) {
+            out.append(i == 0 ? "throws " : ", ").append(exceptions[i].getCanonicalName());
         }
-        for (var method : clazz.getDeclaredMethods()) {
-            if (Modifier.isAbstract(method.getModifiers())) {
-                methodCodes.add(getExecutableCode(method));
-            }
-        }
-        addAbstractMethods(clazz.getSuperclass(), methodCodes);
     }
 
     /**
-     * Generates suffix to declaration of method with throw exception string.
+     * Writes type and name of executable.
      *
-     * @param executable executable that needs to be generated
-     * @return an empty string if given method doesn't throw checked exceptions.
-     * A code with throw exception string otherwise.
+     * @param executable Executable that needs to be generated
+     * @param out        destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getExceptionsCode(Executable executable) {
-        if (executable.getExceptionTypes().length == 0)
-            return "";
-        StringJoiner stringJoiner = new StringJoiner(", ", "throws ", "");
-        for (var exception : executable.getExceptionTypes()) {
-            stringJoiner.add(exception.getCanonicalName());
+    private void writeTypeAndName(Executable executable, Appendable out) throws IOException {
+        if (executable instanceof Method) {
+            writeType(((Method) executable).getReturnType(), out);
+            out.append(' ').append(executable.getName());
+        } else {
+            out.append(executable.getDeclaringClass().getSimpleName()).append("Impl");
         }
-        return stringJoiner.toString();
     }
 
     /**
-     * Generates type and name of executable.
+     * Writes declaration of given method or constructor.
      *
      * @param executable Executable that needs to be generated
-     * @return type + name of executable + Impl
+     * @param out        destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getTypeAndNameCode(Executable executable) {
-        if (executable instanceof Method) {
-            var clazz = ((Method) executable).getReturnType();
-            if (clazz.isPrimitive()) {
-                return clazz.getSimpleName() + " " + executable.getName();
-            }
-            return clazz.getCanonicalName() + " " + executable.getName();
-        } else {
-            return executable.getDeclaringClass().getSimpleName() + "Impl";
-        }
+    private void writeDeclaration(Executable executable, Appendable out) throws IOException {
+        out.append(getModifiersCode(executable.getModifiers())).append(' ');
+        writeTypeAndName(executable, out);
+        writeArguments(executable, true, out);
+        writeExceptions(executable, out);
     }
 
     /**
-     * Generates code given method or constructor.
+     * Writes code of given method or constructor.
      *
      * @param executable Executable that needs to be generated
-     * @return Full implementation code of given method or constructor.
+     * @param out        destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String getExecutableCode(Executable executable) {
-        return getModifiersCode(executable.getModifiers()) +
-                " " +
-                getTypeAndNameCode(executable) +
-                getArgumentsCode(executable, true) +
-                getExceptionsCode(executable) +
-                " { " +
-                System.lineSeparator() +
-                getExecitableImplementationCode(executable) +
-                getIndentation(1) + "}";
+    private void writeExecutable(Executable executable, Appendable out) throws IOException {
+        writeDeclaration(executable, out);
+        out.append(" { ").append(LINE_SEPARATOR);
+        writeExecutableImplementation(executable, out);
+        writeIndentation(1, out);
+        out.append("}");
     }
 
-
     /**
-     * Generates code for all abstract methods and public constructors in class.
+     * Returns non-private constructors of given class.
      *
-     * @param clazz class that needs to be implemented
-     * @return A string of all generated code for all abstract methods and
-     * non-private constructors of given class.
+     * @param metadata metadata of class that needs to be implemented
+     * @param clazz    class that needs to be implemented
+     * @return non-private constructors, empty for interfaces
      * @throws ImplerException if there are all constructors are private
      */
-    private String getExecutablesCode(Class<?> clazz) throws ImplerException {
-        StringJoiner stringJoiner = new StringJoiner(System.lineSeparator() + System.lineSeparator() + getIndentation(1), "{ " + System.lineSeparator() + getIndentation(1), System.lineSeparator() + "}");
-        Set<String> methodCodes = new HashSet<>();
-        addAbstractMethods(clazz, methodCodes);
-        for (var methodCode : methodCodes) {
-            stringJoiner.add(methodCode);
-        }
-        Constructor[] constructors = clazz.getDeclaredConstructors();
-        int counter = 0;
-        for (var constructor : constructors) {
-            if (!Modifier.isPrivate(constructor.getModifiers())) {
-                counter++;
-                stringJoiner.add(getExecutableCode(constructor));
-            }
-        }
-        if (counter == 0 && !clazz.isInterface()) {
+    private List<Constructor<?>> getConstructors(TypeMetadata metadata, Class<?> clazz) throws ImplerException {
+        if (metadata.getConstructors().isEmpty() && !clazz.isInterface()) {
             throw new ImplerException("All constructors are private");
         }
-        return stringJoiner.toString();
+        return metadata.getConstructors();
     }
 
     /**
-     * Encodes given string to utf-8.
+     * Writes code for given methods and constructors, covered in braces.
      *
-     * @param input string that needs to be translated
-     * @return unicode string of input
+     * @param executables methods and constructors that need to be generated
+     * @param out         destination of code
+     * @throws IOException if an I/O error occurs
      */
-    private String toUnicode(String input) {
-        StringBuilder b = new StringBuilder();
-        for (char c : input.toCharArray()) {
-            if ((int) c >= 128) {
-                b.append(String.format("\\u%04X", (int) c));
-            } else {
-                b.append(c);
+    private void writeExecutables(List<Executable> executables, Appendable out) throws IOException {
+        out.append("{ ").append(LINE_SEPARATOR);
+        writeIndentation(1, out);
+        boolean first = true;
+        for (var executable : executables) {
+            if (!first) {
+                out.append(LINE_SEPARATOR).append(LINE_SEPARATOR);
+                writeIndentation(1, out);
             }
+            first = false;
+            writeExecutable(executable, out);
         }
-        return b.toString();
+        out.append(LINE_SEPARATOR).append("}");
+    }
+
+    /**
+     * Writes implementation code of given class.
+     * Resulted code is implementation of public class that derives given class
+     * and it has name of given class name with "Impl" suffix.
+     * Characters out of ASCII range are written as unicode escapes. Nothing is written
+     * if given class can not be implemented.
+     *
+     * @param clazz class that needs to be generated
+     * @param out   destination of code
+     * @throws ImplerException if there are all constructors are private in given class.
+     * @throws IOException     if an I/O error occurs
+     */
+    void writeClassCode(Class<?> clazz, Appendable out) throws ImplerException, IOException {
+        final TypeMetadata metadata = TypeMetadata.of(clazz);
+        final List<Executable> executables = new ArrayList<>(metadata.getAbstractMethods());
+        executables.addAll(getConstructors(metadata, clazz));
+
+        final Appendable escaped = new UnicodeEscaper(out);
+        writePackage(clazz.getPackageName(), escaped);
+        escaped.append(LINE_SEPARATOR);
+        writeClassDeclaration(clazz, escaped);
+        writeExecutables(executables, escaped);
     }
 
     /**
@@ -291,20 +376,180 @@ class ClassWriter {
      * and it has name of given class name with "Impl" suffix.
      *
      * @param clazz class that needs to be generated
-     * @return An implementation code of given class encoded in utf-8.
+     * @return An implementation code of given class with unicode escapes.
      * @throws ImplerException if there are all constructors are private in given class.
+     * @see #writeClassCode(Class, Appendable)
      */
     String getClassCode(Class<?> clazz) throws ImplerException {
-        @SuppressWarnings("StringBufferReplaceableByString")
-        StringBuilder stringBuilder = new StringBuilder();
+        final StringBuilder sb = new StringBuilder();
+        try {
+            writeClassCode(clazz, sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sb.toString();
+    }
 
-        stringBuilder.append(getPackageCode(clazz.getPackage()));
-        stringBuilder.append(System.lineSeparator());
-        stringBuilder.append(getClassDeclarationCode(clazz));
-        stringBuilder.append(getExecutablesCode(clazz));
+    /**
+     * Writes method of decorator that forwards call to delegate and records its latency.
+     *
+     * @param method method that needs to be generated
+     * @param number index of method in statistics of decorator
+     * @param out    destination of code
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeDecoratedMethod(Method method, int number, Appendable out) throws IOException {
+        out.append("@Override").append(LINE_SEPARATOR);
+        writeIndentation(1, out);
+        writeDeclaration(method, out);
+        out.append(" { ").append(LINE_SEPARATOR);
+        writeIndentation(2, out);
+        out.append("final long start = System.nanoTime();").append(LINE_SEPARATOR);
+        writeIndentation(2, out);
+        out.append("try {").append(LINE_SEPARATOR);
+        writeIndentation(3, out);
+        out.append(method.getReturnType() == void.class ? "" : "return ")
+                .append("delegate.").append(method.getName());
+        writeArguments(method, false, out);
+        out.append(";").append(LINE_SEPARATOR);
+        writeIndentation(2, out);
+        out.append("} finally {").append(LINE_SEPARATOR);
+        writeIndentation(3, out);
+        out.append("recordDecoratedCall(").append(Integer.toString(number))
+                .append(", System.nanoTime() - start);").append(LINE_SEPARATOR);
+        writeIndentation(2, out);
+        out.append("}").append(LINE_SEPARATOR);
+        writeIndentation(1, out);
+        out.append("}");
+    }
 
-        return toUnicode(stringBuilder.toString());
+    /**
+     * Writes given lines of code, each non-empty one with given indentation.
+     *
+     * @param padding indentation of lines
+     * @param out     destination of code
+     * @param lines   lines of code
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeLines(int padding, Appendable out, String... lines) throws IOException {
+        for (final String line : lines) {
+            writeIndentation(line.isEmpty() ? 0 : padding, out);
+            out.append(line).append(LINE_SEPARATOR);
+        }
     }
 
+    /**
+     * Writes code of instrumenting decorator of given interface. <p>
+     * Resulted class has name given by {@link Implementor#getDecoratorName(Class)}, implements it
+     * and has public constructor accepting delegate. Every public instance method forwards
+     * call to delegate, counting calls and latencies by {@link java.util.concurrent.atomic.LongAdder}s.
+     * Statistics are available through generated methods:
+     * <ul>
+     * <li>{@code static String[] DECORATED_METHODS} - signatures of decorated methods</li>
+     * <li>{@code long getDecoratedCalls(int method)} - number of calls of method</li>
+     * <li>{@code long[] getDecoratedLatencies(int method)} - histogram of latencies of method,
+     * with {@value #LATENCY_BUCKETS} buckets of powers of two nanoseconds</li>
+     * </ul>
+     *
+     * @param clazz interface that needs to be decorated
+     * @param out   destination of code
+     * @throws ImplerException if given class is not an interface
+     * @throws IOException     if an I/O error occurs
+     */
+    void writeDecoratorCode(Class<?> clazz, Appendable out) throws ImplerException, IOException {
+        if (!clazz.isInterface()) {
+            throw new ImplerException("Only interfaces can be decorated");
+        }
+        final List<Method> methods = TypeMetadata.of(clazz).getPublicMethods();
+        final String binaryName = Implementor.getDecoratorName(clazz);
+        final int dot = binaryName.lastIndexOf('.');
+        final String name = binaryName.substring(dot + 1);
+        final String type = clazz.getCanonicalName();
+
+        final Appendable escaped = new UnicodeEscaper(out);
+        writePackage(dot < 0 ? "" : binaryName.substring(0, dot), escaped);
+        escaped.append(LINE_SEPARATOR);
+        escaped.append("public class ").append(name).append(" implements ").append(type).append(" {").append(LINE_SEPARATOR);
 
+        writeIndentation(1, escaped);
+        escaped.append("public static final String[] DECORATED_METHODS = {");
+        for (int i = 0; i < methods.size(); i++) {
+            escaped.append(i == 0 ? "" : ", ").append('"').append(methods.get(i).getName());
+            final Class<?>[] parameters = methods.get(i).getParameterTypes();
+            for (int j = 0; j < parameters.length; j++) {
+                escaped.append(j == 0 ? "(" : ", ");
+                writeType(parameters[j], escaped);
+            }
+            escaped.append(parameters.length == 0 ? "()" : ")").append('"');
+        }
+        escaped.append("};").append(LINE_SEPARATOR).append(LINE_SEPARATOR);
+
+        writeLines(1, escaped,
+                "private final " + type + " delegate;",
+                "private final " + LONG_ADDER + "[] calls = new " + LONG_ADDER + "[" + methods.size() + "];",
+                "private final " + LONG_ADDER + "[][] latencies = new " + LONG_ADDER
+                        + "[" + methods.size() + "][" + LATENCY_BUCKETS + "];",
+                "",
+                "public " + name + "(" + type + " delegate) {");
+        writeLines(2, escaped,
+                "this.delegate = java.util.Objects.requireNonNull(delegate);",
+                "for (int i = 0; i < calls.length; i++) {");
+        writeLines(3, escaped,
+                "calls[i] = new " + LONG_ADDER + "();",
+                "for (int j = 0; j < latencies[i].length; j++) {");
+        writeLines(4, escaped, "latencies[i][j] = new " + LONG_ADDER + "();");
+        writeLines(3, escaped, "}");
+        writeLines(2, escaped, "}");
+        writeLines(1, escaped,
+                "}",
+                "",
+                "private void recordDecoratedCall(int method, long nanos) {");
+        writeLines(2, escaped,
+                "calls[method].increment();",
+                "latencies[method][Math.min(64 - Long.numberOfLeadingZeros(Math.max(nanos, 0)), "
+                        + (LATENCY_BUCKETS - 1) + ")].increment();");
+        writeLines(1, escaped,
+                "}",
+                "",
+                "public long getDecoratedCalls(int method) {");
+        writeLines(2, escaped, "return calls[method].sum();");
+        writeLines(1, escaped,
+                "}",
+                "",
+                "public long[] getDecoratedLatencies(int method) {");
+        writeLines(2, escaped,
+                "final long[] histogram = new long[latencies[method].length];",
+                "for (int i = 0; i < histogram.length; i++) {");
+        writeLines(3, escaped, "histogram[i] = latencies[method][i].sum();");
+        writeLines(2, escaped,
+                "}",
+                "return histogram;");
+        writeLines(1, escaped, "}");
+
+        for (int i = 0; i < methods.size(); i++) {
+            escaped.append(LINE_SEPARATOR);
+            writeIndentation(1, escaped);
+            writeDecoratedMethod(methods.get(i), i, escaped);
+            escaped.append(LINE_SEPARATOR);
+        }
+        escaped.append("}").append(LINE_SEPARATOR);
+    }
+
+    /**
+     * Generates code of instrumenting decorator of given interface.
+     *
+     * @param clazz interface that needs to be decorated
+     * @return code of decorator with unicode escapes
+     * @throws ImplerException if given class is not an interface
+     * @see #writeDecoratorCode(Class, Appendable)
+     */
+    String getDecoratorCode(Class<?> clazz) throws ImplerException {
+        final StringBuilder sb = new StringBuilder();
+        try {
+            writeDecoratorCode(clazz, sb);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return sb.toString();
+    }
 }
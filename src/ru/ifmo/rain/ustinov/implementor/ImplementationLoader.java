@@ -0,0 +1,156 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Defines implementations of classes and interfaces directly in running JVM. <p>
+ * Implementations are emitted by {@link BytecodeWriter}, so neither compiler nor files are involved.
+ * Implementation is defined in the package and class loader of implemented type, when the package
+ * is open to this class, or by dedicated class loader otherwise; in the latter case
+ * package-private abstract methods can not be implemented.
+ * Implementations are cached per type, so repeated requests return the same class.
+ * Implementations are named {@code XImpl$$Stub<n>} rather than {@code XImpl}, so they never
+ * shadow implementations generated by {@link Implementor#implementJar(Class, java.nio.file.Path)}
+ * and loaded through class loaders delegating to the loader of implemented type.
+ *
+ * @author Artem Ustinov
+ * @see Implementor
+ */
+public final class ImplementationLoader {
+    /**
+     * Suffix of names of implementations, followed by unique number.
+     */
+    private static final String STUB_SUFFIX = "$$Stub";
+
+    /**
+     * Counter of defined implementations, making their names unique.
+     */
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * Cached implementations by implemented types.
+     */
+    private static final ClassValue<Class<?>> IMPLEMENTATIONS = new ClassValue<>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            try {
+                return define(type);
+            } catch (ImplerException e) {
+                throw new UncheckedImplerException(e);
+            }
+        }
+    };
+
+    /**
+     * Utility class, not instantiated.
+     */
+    private ImplementationLoader() {
+    }
+
+    /**
+     * Class loader defining single implementation class.
+     */
+    private static class DefiningClassLoader extends ClassLoader {
+        /**
+         * Creates class loader delegating to loader of implemented type.
+         *
+         * @param parent class loader of implemented type, {@code null} for bootstrap class loader
+         */
+        DefiningClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        /**
+         * Defines class with given bytes.
+         *
+         * @param name  binary name of class
+         * @param bytes class file
+         * @return defined class
+         */
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Generates and defines implementation of given type.
+     *
+     * @param type class or interface to implement
+     * @return defined implementation
+     * @throws ImplerException if given type can not be implemented or implementation can not be defined
+     */
+    private static Class<?> define(Class<?> type) throws ImplerException {
+        Implementor.checkImplementable(type);
+        final String packageName = type.getPackageName();
+        final String name = Implementor.getImplName(type) + STUB_SUFFIX + COUNTER.incrementAndGet();
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            return lookup.defineClass(new BytecodeWriter().getClassBytes(type, name));
+        } catch (IllegalAccessException | SecurityException | LinkageError e) {
+            // Package is not open to us, fall back to class loader of our own.
+        }
+        final String loaderName = packageName.startsWith("java.") ? Implementor.PLATFORM_PACKAGE_PREFIX + name : name;
+        try {
+            return new DefiningClassLoader(type.getClassLoader())
+                    .define(loaderName, new BytecodeWriter().getClassBytes(type, loaderName));
+        } catch (LinkageError | SecurityException e) {
+            throw new ImplerException("Can't define implementation of " + type.getName(), e);
+        }
+    }
+
+    /**
+     * Returns implementation of given class or interface, defining it on first request.
+     * Implementation derives given type, its abstract methods return default values and its
+     * constructors call super constructors with the same arguments.
+     *
+     * @param type class or interface to implement
+     * @param <T>  implemented type
+     * @return implementation of given type
+     * @throws ImplerException if given type can not be implemented
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Class<? extends T> getImplementation(Class<T> type) throws ImplerException {
+        if (type == null) {
+            throw new ImplerException("Arguments must be non-null");
+        }
+        try {
+            return (Class<? extends T>) IMPLEMENTATIONS.get(type);
+        } catch (UncheckedImplerException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Creates instance of implementation of given class or interface by its constructor
+     * with given arguments.
+     *
+     * @param type class or interface to implement
+     * @param args constructor arguments
+     * @param <T>  implemented type
+     * @return new instance of implementation
+     * @throws ImplerException if given type can not be implemented, there is no constructor
+     *                         accepting given arguments or it fails
+     */
+    public static <T> T newInstance(Class<T> type, Object... args) throws ImplerException {
+        final Class<? extends T> implementation = getImplementation(type);
+        for (final Constructor<?> constructor : implementation.getDeclaredConstructors()) {
+            if (constructor.getParameterCount() == args.length && constructor.trySetAccessible()) {
+                try {
+                    return type.cast(constructor.newInstance(args));
+                } catch (IllegalArgumentException e) {
+                    // Argument types do not match, try next constructor.
+                } catch (InstantiationException | IllegalAccessException e) {
+                    throw new ImplerException("Can't instantiate " + implementation.getName(), e);
+                } catch (InvocationTargetException e) {
+                    throw new ImplerException("Constructor of " + type.getName() + " failed", e.getCause());
+                }
+            }
+        }
+        throw new ImplerException("No constructor of " + type.getName() + " accepts given arguments");
+    }
+}
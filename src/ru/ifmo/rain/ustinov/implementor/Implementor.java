@@ -3,23 +3,20 @@ package ru.ifmo.rain.ustinov.implementor;
 import info.kgeorgiy.java.advanced.implementor.ImplerException;
 import info.kgeorgiy.java.advanced.implementor.JarImpler;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.*;
 import java.net.URISyntaxException;
+import java.security.CodeSource;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 
 /**
  * Generates .java and .jar files of implementations of classes and interfaces.
@@ -29,11 +26,105 @@ import java.util.zip.ZipEntry;
  * @see Implementor#implementJar(Class, Path)
  */
 public class Implementor implements JarImpler {
+    /**
+     * Ways of producing class files of implementations.
+     */
+    public enum Backend {
+        /**
+         * Generated sources are compiled by system java compiler.
+         */
+        JAVAC,
+        /**
+         * Class files are emitted directly by {@link BytecodeWriter}, no compiler is required.
+         */
+        BYTECODE
+    }
+
+    /**
+     * Backend producing class files for {@link #implementJar(Class, Path)} and its batch variants.
+     */
+    private final Backend backend;
+
+    /**
+     * Compression level of generated jar files.
+     */
+    private final int compressionLevel;
+
+    /**
+     * Compiler shared by all compilations, created on first use.
+     */
+    private MemoryCompiler compiler;
+
+    /**
+     * Returns backend producing class files.
+     *
+     * @return backend of this implementor
+     */
+    Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Returns compiler shared by all compilations of this implementor.
+     *
+     * @return in-memory compiler
+     * @throws ImplerException if there is no system java compiler
+     */
+    private synchronized MemoryCompiler getCompiler() throws ImplerException {
+        if (compiler == null) {
+            compiler = new MemoryCompiler();
+        }
+        return compiler;
+    }
+
+    /**
+     * Returns compression level of generated jar files.
+     *
+     * @return compression level of this implementor
+     */
+    int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Creates implementor compiling generated sources by system java compiler.
+     */
+    public Implementor() {
+        this(Backend.JAVAC);
+    }
+
+    /**
+     * Creates implementor producing class files by given backend.
+     *
+     * @param backend backend producing class files
+     */
+    public Implementor(Backend backend) {
+        this(backend, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates implementor producing class files by given backend and writing jar files
+     * with given compression level. Jar files have fixed timestamps, so they are reproducible.
+     *
+     * @param backend          backend producing class files
+     * @param compressionLevel compression level from {@code 0} (entries are stored uncompressed)
+     *                         to {@code 9}, or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    public Implementor(Backend backend, int compressionLevel) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("Invalid compression level " + compressionLevel);
+        }
+        this.backend = Objects.requireNonNull(backend);
+        this.compressionLevel = compressionLevel;
+    }
+
     /**
      * Creates .jar file with implementation of given class or interface. <p>
      * Resulted archive has name of given with suffix Impl. Generated class
      * derives given class or interface and contains implementation of its
      * abstract methods and non-private constructors.
+     * Generated source is compiled in memory, so no temporary files are created.
+     * With {@link Backend#BYTECODE} class file is emitted directly, without compiler.
      *
      * @param aClass class or interface, implementation of that will be
      *               generated.
@@ -52,42 +143,187 @@ public class Implementor implements JarImpler {
         if (aClass == null || path == null) {
             throw new ImplerException("Arguments must be non-null");
         }
-        Path tempDirectory;
-        try {
-            tempDirectory = Files.createTempDirectory(path.toAbsolutePath().getParent(), "temp");
-        } catch (IOException e) {
-            throw new ImplerException("Can't create temp directory: ", e);
+        checkImplementable(aClass);
+        final SortedMap<String, byte[]> classes;
+        if (backend == Backend.BYTECODE) {
+            classes = new TreeMap<>(Map.of(getImplName(aClass), new BytecodeWriter().getClassBytes(aClass)));
+        } else {
+            classes = getCompiler().compile(
+                    Map.of(getImplName(aClass), new ClassWriter().getClassCode(aClass)),
+                    getClassPath(aClass));
         }
-        try {
-            implement(aClass, tempDirectory);
-            final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-            if (compiler == null) {
-                throw new ImplerException("Can not find java compiler.");
+        writeJar(classes, path);
+    }
+
+    /**
+     * Creates single .jar file with implementations of all given classes and interfaces. <p>
+     * Implementations are generated in parallel and, unless {@link Backend#BYTECODE} is used,
+     * compiled by single compiler invocation.
+     *
+     * @param classes classes or interfaces, implementations of that will be generated.
+     * @param path    path to file, where generated file will be created.
+     * @throws ImplerException if any of given classes cannot be implemented
+     *                         or implementations have equal names.
+     * @see Implementor#implementJar(Class, Path)
+     */
+    public void implementJar(Collection<Class<?>> classes, Path path) throws ImplerException {
+        if (classes == null || path == null) {
+            throw new ImplerException("Arguments must be non-null");
+        }
+        writeJar(compileAll(classes), path);
+    }
+
+    /**
+     * Creates .jar file with implementation for each of given classes and interfaces. <p>
+     * Implementation of class {@code a.b.C} is written to {@code directory/a.b.CImpl.jar}.
+     * Implementations are generated in parallel and, unless {@link Backend#BYTECODE} is used,
+     * compiled by single compiler invocation.
+     *
+     * @param classes   classes or interfaces, implementations of that will be generated.
+     * @param directory directory, where generated files will be created.
+     * @throws ImplerException if any of given classes cannot be implemented
+     *                         or implementations have equal names.
+     * @see Implementor#implementJar(Class, Path)
+     */
+    public void implementJars(Collection<Class<?>> classes, Path directory) throws ImplerException {
+        if (classes == null || directory == null) {
+            throw new ImplerException("Arguments must be non-null");
+        }
+        final SortedMap<String, byte[]> compiled = compileAll(classes);
+        for (final Class<?> aClass : classes) {
+            final String name = getImplName(aClass);
+            writeJar(compiled.subMap(name, name + Character.MAX_VALUE).entrySet().stream()
+                            .filter(entry -> entry.getKey().equals(name) || entry.getKey().startsWith(name + "$"))
+                            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, TreeMap::new)),
+                    directory.resolve(name + ".jar"));
+        }
+    }
+
+    /**
+     * Generates implementations of given classes in parallel.
+     * Sources are compiled together, or class files are emitted directly, depending on backend.
+     *
+     * @param classes classes or interfaces to implement
+     * @return bytes of class files by binary names of classes
+     * @throws ImplerException if any of given classes cannot be implemented
+     *                         or implementations have equal names.
+     */
+    private SortedMap<String, byte[]> compileAll(Collection<Class<?>> classes) throws ImplerException {
+        final Map<String, Class<?>> names = new HashMap<>();
+        final Set<String> classPath = new LinkedHashSet<>();
+        for (final Class<?> aClass : classes) {
+            if (aClass == null) {
+                throw new ImplerException("Arguments must be non-null");
             }
-            List<String> args = new ArrayList<>();
-            args.add("-cp");
-            try {
-                args.add(tempDirectory + File.pathSeparator + aClass.getProtectionDomain().getCodeSource().getLocation().toURI().toString());
-            } catch (URISyntaxException e) {
-                throw new AssertionError(e);
+            checkImplementable(aClass);
+            final Class<?> previous = names.put(getImplName(aClass), aClass);
+            if (previous != null && previous != aClass) {
+                throw new ImplerException("Implementations of " + previous.getName() + " and " + aClass.getName() + " have equal names");
             }
-            args.add("-encoding");
-            args.add("utf-8");
-            args.add(tempDirectory.resolve(aClass.getName().replace('.', File.separatorChar) + "Impl.java").toString());
-            if (compiler.run(null, null, null, args.toArray(String[]::new)) != 0) {
-                throw new ImplerException("Can't compile file");
+            final String location = getClassPath(aClass);
+            if (!location.isEmpty()) {
+                classPath.add(location);
             }
-            Manifest manifest = new Manifest();
-            Attributes attributes = manifest.getMainAttributes();
-            attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
-            try (JarOutputStream writer = new JarOutputStream(Files.newOutputStream(path), manifest)) {
-                writer.putNextEntry(new ZipEntry(aClass.getName().replace('.', File.separatorChar) + "Impl.class"));
-                Files.copy(tempDirectory.resolve(aClass.getName().replace('.', File.separatorChar) + "Impl.class"), writer);
-            } catch (IOException e) {
-                throw new ImplerException("Unable to write to JAR file", e);
+        }
+        if (backend == Backend.BYTECODE) {
+            try {
+                return names.entrySet().parallelStream().collect(Collectors.toMap(Map.Entry::getKey, entry -> {
+                    try {
+                        return new BytecodeWriter().getClassBytes(entry.getValue());
+                    } catch (ImplerException e) {
+                        throw new UncheckedImplerException(e);
+                    }
+                }, (a, b) -> a, TreeMap::new));
+            } catch (UncheckedImplerException e) {
+                throw e.getCause();
             }
-        } finally {
-            tempDirectory.toFile().deleteOnExit();
+        }
+        final Map<String, String> sources;
+        try {
+            sources = names.entrySet().parallelStream().collect(Collectors.toConcurrentMap(Map.Entry::getKey, entry -> {
+                try {
+                    return new ClassWriter().getClassCode(entry.getValue());
+                } catch (ImplerException e) {
+                    throw new UncheckedImplerException(e);
+                }
+            }));
+        } catch (UncheckedImplerException e) {
+            throw e.getCause();
+        }
+        return getCompiler().compile(sources, String.join(File.pathSeparator, classPath));
+    }
+
+    /**
+     * Returns binary name of implementation of given class.
+     *
+     * @param aClass implemented class or interface
+     * @return name of given class with "Impl" suffix in the same package
+     */
+    static String getImplName(Class<?> aClass) {
+        final String packageName = aClass.getPackageName();
+        return (packageName.isEmpty() ? "" : packageName + ".") + aClass.getSimpleName() + "Impl";
+    }
+
+    /**
+     * Prefix of packages of generated classes for types, whose packages belong to platform modules
+     * and therefore can not contain classes compiled or defined outside of them.
+     */
+    static final String PLATFORM_PACKAGE_PREFIX = "impl.";
+
+    /**
+     * Returns binary name of decorator of given interface.
+     *
+     * @param aClass decorated interface
+     * @return name of given interface with "Decorator" suffix in the same package or,
+     * if interface is loaded by bootstrap or platform class loader,
+     * in the same package prefixed with {@value #PLATFORM_PACKAGE_PREFIX}
+     */
+    static String getDecoratorName(Class<?> aClass) {
+        final ClassLoader loader = aClass.getClassLoader();
+        final String packageName = loader == null || loader == ClassLoader.getPlatformClassLoader()
+                ? PLATFORM_PACKAGE_PREFIX + aClass.getPackageName() : aClass.getPackageName();
+        return (packageName.isEmpty() ? "" : packageName + ".") + aClass.getSimpleName() + "Decorator";
+    }
+
+    /**
+     * Returns class path required to compile implementation of given class.
+     *
+     * @param aClass implemented class or interface
+     * @return location of given class or empty string if it is loaded by bootstrap class loader
+     */
+    static String getClassPath(Class<?> aClass) {
+        final CodeSource codeSource = aClass.getProtectionDomain().getCodeSource();
+        if (codeSource == null) {
+            return "";
+        }
+        try {
+            return Path.of(codeSource.getLocation().toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Writes class files to jar with compression level of this implementor.
+     *
+     * @param classes bytes of class files by binary names of classes
+     * @param path    path to jar file
+     * @throws ImplerException if jar can not be written
+     * @see JarWriter
+     */
+    private void writeJar(SortedMap<String, byte[]> classes, Path path) throws ImplerException {
+        new JarWriter(compressionLevel).write(classes, path);
+    }
+
+    /**
+     * Checks that given class can be implemented.
+     *
+     * @param aClass class or interface to check
+     * @throws ImplerException if given class is primitive, array, {@link Enum} or final
+     */
+    static void checkImplementable(Class<?> aClass) throws ImplerException {
+        if (aClass.isPrimitive() || aClass.isArray() || aClass == Enum.class || Modifier.isFinal(aClass.getModifiers())) {
+            throw new ImplerException("Class can't be implemented.");
         }
     }
 
@@ -113,15 +349,13 @@ public class Implementor implements JarImpler {
         if (aClass == null || path == null) {
             throw new ImplerException("Arguments must be non-null.");
         }
-        if (aClass.isPrimitive() || aClass.isArray() || aClass == Enum.class || Modifier.isFinal(aClass.getModifiers())) {
-            throw new ImplerException("Class can't be implemented.");
-        }
+        checkImplementable(aClass);
         Path newPath = Paths.get(path.toString(), aClass.getName().replace('.', File.separatorChar) + "Impl.java");
         try {
             Files.createDirectories(newPath.getParent());
             try (BufferedWriter bufferedWriter = Files.newBufferedWriter(newPath, StandardCharsets.UTF_8)) {
                 ClassWriter classWriter = new ClassWriter();
-                bufferedWriter.write(classWriter.getClassCode(aClass));
+                classWriter.writeClassCode(aClass, bufferedWriter);
             } catch (IOException e) {
                 throw new ImplerException(" Can't write into file " + path.getFileName() + ": " + e.getMessage(), e);
             }
@@ -130,11 +364,57 @@ public class Implementor implements JarImpler {
         }
     }
 
+    /**
+     * Creates .java file with instrumenting decorator of given interface. <p>
+     * Resulted class has name returned by {@link #getDecoratorName(Class)}. It accepts
+     * delegate in constructor and forwards every call to it, counting calls and
+     * histograms of their latencies.
+     *
+     * @param aClass interface, decorator of that will be generated.
+     * @param path   path to directory, where generated file will be created.
+     * @throws ImplerException if one of the arguments is null, given class is not an interface
+     *                         or file can not be written
+     * @see ClassWriter#writeDecoratorCode(Class, Appendable)
+     */
+    public void implementDecorator(Class<?> aClass, Path path) throws ImplerException {
+        if (aClass == null || path == null) {
+            throw new ImplerException("Arguments must be non-null.");
+        }
+        Path newPath = Paths.get(path.toString(), getDecoratorName(aClass).replace('.', File.separatorChar) + ".java");
+        try {
+            Files.createDirectories(newPath.getParent());
+            try (BufferedWriter bufferedWriter = Files.newBufferedWriter(newPath, StandardCharsets.UTF_8)) {
+                new ClassWriter().writeDecoratorCode(aClass, bufferedWriter);
+            }
+        } catch (IOException e) {
+            throw new ImplerException("Can't write decorator to " + newPath + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates .jar file with compiled instrumenting decorator of given interface.
+     * Decorators are always compiled by system java compiler.
+     *
+     * @param aClass interface, decorator of that will be generated.
+     * @param path   path to file, where generated file will be created.
+     * @throws ImplerException if one of the arguments is null, given class is not an interface
+     *                         or decorator can not be compiled or written
+     * @see #implementDecorator(Class, Path)
+     */
+    public void implementDecoratorJar(Class<?> aClass, Path path) throws ImplerException {
+        if (aClass == null || path == null) {
+            throw new ImplerException("Arguments must be non-null");
+        }
+        writeJar(getCompiler().compile(
+                Map.of(getDecoratorName(aClass), new ClassWriter().getDecoratorCode(aClass)),
+                getClassPath(aClass)), path);
+    }
+
     /**
      * Prints an usage message in console.
      */
     private static void printUsage() {
-        System.out.println("Usage: implementor [-jar] path/to/ouptut/file path/to/input/class");
+        System.out.println("Usage: implementor [-jar|-bytecode] path/to/ouptut/file path/to/input/class");
     }
 
     /**
@@ -142,6 +422,7 @@ public class Implementor implements JarImpler {
      * There are two legal cases:
      * <ul>
      * <li> -jar path className - runs {@link #implementJar(Class, Path)}</li>
+     * <li> -bytecode path className - runs {@link #implementJar(Class, Path)} with {@link Backend#BYTECODE}</li>
      * <li> path className - runs {@link #implement(Class, Path)}</li>
      * </ul>
      *
@@ -164,6 +445,8 @@ public class Implementor implements JarImpler {
                 impler.implement(Class.forName(args[0]), Paths.get(args[1]));
             } else if (args[0].equals("-jar")) {
                 impler.implementJar(Class.forName(args[1]), Paths.get(args[2]));
+            } else if (args[0].equals("-bytecode")) {
+                new Implementor(Backend.BYTECODE).implementJar(Class.forName(args[1]), Paths.get(args[2]));
             } else {
                 printUsage();
             }
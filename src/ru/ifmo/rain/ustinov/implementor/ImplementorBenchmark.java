@@ -0,0 +1,200 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Measures time and allocation of {@link Implementor} on types of implementor tests. <p>
+ * Every type is measured end-to-end by {@link Implementor#implement(Class, Path)} and
+ * {@link Implementor#implementJar(Class, Path)} and by phases: reflection,
+ * source generation, compilation, bytecode generation and jar writing.
+ * Phases run sequentially on the calling thread, so allocation is measured precisely.
+ *
+ * @author Artem Ustinov
+ */
+public class ImplementorBenchmark {
+    /**
+     * Package of test types.
+     */
+    private static final String PACKAGE = "info.kgeorgiy.java.advanced.implementor.";
+
+    /**
+     * Measured types of implementor tests.
+     */
+    private static final List<String> TYPES = List.of(
+            "basic.interfaces.standard.Accessible",
+            "basic.interfaces.standard.Descriptor",
+            "basic.interfaces.standard.RandomAccess",
+            "basic.classes.standard.ClassLogger",
+            "basic.classes.standard.IIOException",
+            "basic.classes.standard.IIOImage",
+            "basic.classes.standard.Logger",
+            "basic.classes.standard.RelationNotFoundException",
+            "basic.classes.standard.RMIServerImpl",
+            "full.interfaces.standard.AccessibleAction",
+            "full.interfaces.standard.CachedRowSet",
+            "full.interfaces.standard.DataInput",
+            "full.interfaces.standard.DataOutput",
+            "full.interfaces.standard.SDeprecated",
+            "full.classes.standard.BMPImageWriteParam",
+            "full.classes.standard.FileCacheImageInputStream",
+            "full.classes.standard.ImmutableDescriptor",
+            "full.classes.standard.LdapReferralException",
+            "full.classes.standard.RMIIIOPServerImpl"
+    );
+
+    /**
+     * Keeps results reachable, so phases are not optimized out.
+     */
+    @SuppressWarnings("unused")
+    private static volatile Object sink;
+
+    /**
+     * Measured operation on a type.
+     */
+    @FunctionalInterface
+    private interface Phase {
+        /**
+         * Runs operation.
+         *
+         * @param token measured type
+         * @return result of operation
+         * @throws Exception if operation fails
+         */
+        Object run(Class<?> token) throws Exception;
+    }
+
+    /**
+     * Returns number of bytes allocated by current thread.
+     *
+     * @return allocated bytes or {@code 0} if not supported
+     */
+    private static long allocatedBytes() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Measures phase on given type and prints result.
+     *
+     * @param token   measured type
+     * @param name    name of phase
+     * @param phase   measured operation
+     * @param warmup  number of warm-up iterations
+     * @param measure number of measured iterations
+     * @param totals  total time in nanoseconds and allocation in bytes by names of phases
+     * @throws Exception if phase fails
+     */
+    private static void measure(Class<?> token, String name, Phase phase, int warmup, int measure,
+                                Map<String, long[]> totals) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            sink = phase.run(token);
+        }
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < measure; i++) {
+            sink = phase.run(token);
+        }
+        final long time = (System.nanoTime() - start) / measure;
+        final long allocated = (allocatedBytes() - allocatedBefore) / measure;
+        final long[] total = totals.computeIfAbsent(name, n -> new long[2]);
+        total[0] += time;
+        total[1] += allocated;
+        System.out.printf("%-28s %-14s %10.3f ms/op %12.1f KB/op%n",
+                token.getSimpleName(), name, time / 1e6, allocated / 1024.0);
+    }
+
+    /**
+     * Deletes given directory with its contents.
+     *
+     * @param directory directory to delete
+     * @throws IOException if an I/O error occurs
+     */
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (final Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Runs benchmark. <p>
+     * Usage: {@code ImplementorBenchmark [iterations [warmup]]}.
+     *
+     * @param args command line arguments
+     * @throws Exception if any phase fails
+     */
+    public static void main(String[] args) throws Exception {
+        final int measure = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        final int warmup = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        final List<Class<?>> tokens = new ArrayList<>();
+        for (final String type : TYPES) {
+            try {
+                tokens.add(Class.forName(PACKAGE + type));
+            } catch (ClassNotFoundException e) {
+                System.err.println("Type " + type + " is not found, skipped");
+            }
+        }
+
+        final Path directory = Files.createTempDirectory("implementor-benchmark");
+        try {
+            final Implementor implementor = new Implementor();
+            final MemoryCompiler compiler = new MemoryCompiler();
+            final JarWriter jarWriter = new JarWriter(Deflater.DEFAULT_COMPRESSION);
+            final Map<Class<?>, SortedMap<String, byte[]>> classFiles = new HashMap<>();
+            for (final Class<?> token : tokens) {
+                classFiles.put(token, new TreeMap<>(Map.of(Implementor.getImplName(token),
+                        new BytecodeWriter().getClassBytes(token))));
+            }
+            final Map<String, Phase> phases = new LinkedHashMap<>();
+            phases.put("implement", token -> {
+                implementor.implement(token, directory.resolve("src"));
+                return null;
+            });
+            phases.put("implementJar", token -> {
+                implementor.implementJar(token, directory.resolve("impl.jar"));
+                return null;
+            });
+            phases.put("reflection", TypeMetadata::compute);
+            phases.put("source", token -> new ClassWriter().getClassCode(token));
+            phases.put("compilation", token -> compiler.compile(
+                    Map.of(Implementor.getImplName(token), new ClassWriter().getClassCode(token)),
+                    Implementor.getClassPath(token)));
+            phases.put("bytecode", token -> new BytecodeWriter().getClassBytes(token));
+            phases.put("jar", token -> {
+                jarWriter.write(classFiles.get(token), directory.resolve("phase.jar"));
+                return null;
+            });
+
+            System.out.printf("%d types, %d warm-up and %d measured iterations%n", tokens.size(), warmup, measure);
+            final Map<String, long[]> totals = new LinkedHashMap<>();
+            for (final Class<?> token : tokens) {
+                for (final Map.Entry<String, Phase> phase : phases.entrySet()) {
+                    measure(token, phase.getKey(), phase.getValue(), warmup, measure, totals);
+                }
+            }
+            System.out.println();
+            totals.forEach((name, total) -> System.out.printf("%-28s %-14s %10.3f ms/op %12.1f KB/op%n",
+                    "total", name, total[0] / 1e6, total[1] / 1024.0));
+        } finally {
+            delete(directory);
+        }
+    }
+}
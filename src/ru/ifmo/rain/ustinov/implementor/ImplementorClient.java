@@ -0,0 +1,122 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+/**
+ * Command line client of {@link ImplementorDaemon}. <p>
+ * Accepts the same arguments as {@link Implementor#main(String[])}, sends them to daemon
+ * along with token read from {@link ImplementorDaemon#DEFAULT_TOKEN_FILE} and prints its response.
+ *
+ * @author Artem Ustinov
+ * @see ImplementorDaemon
+ */
+public class ImplementorClient {
+    /**
+     * Prints an usage message in console.
+     */
+    private static void printUsage() {
+        System.out.println("Usage: ImplementorClient [-port port] [-jar|-bytecode] className path/to/output");
+    }
+
+    /**
+     * Reads token written by daemon.
+     *
+     * @param tokenFile token file of daemon
+     * @return token
+     * @throws IOException if token can not be read
+     */
+    public static String readToken(Path tokenFile) throws IOException {
+        return Files.readString(tokenFile, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Sends single request to daemon.
+     *
+     * @param port      port of daemon on loopback interface
+     * @param token     token of daemon
+     * @param mode      one of {@link ImplementorDaemon#SOURCE}, {@link ImplementorDaemon#JAR}
+     *                  or {@link ImplementorDaemon#BYTECODE}
+     * @param className name of class to implement
+     * @param path      output path, resolved against current directory of client
+     * @return response of daemon
+     * @throws IOException if daemon can not be reached
+     */
+    public static String request(int port, String token, String mode, String className, Path path) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            writer.write(token + "\t" + mode + "\t" + className + "\t" + path.toAbsolutePath() + "\n");
+            writer.flush();
+            final String response = reader.readLine();
+            if (response == null) {
+                throw new IOException("Daemon closed connection");
+            }
+            return response;
+        }
+    }
+
+    /**
+     * Sends request built from command line arguments to daemon. <p>
+     * Exits with status {@code 1} if implementation is not generated.
+     *
+     * @param args arguments for given program.
+     */
+    public static void main(String[] args) {
+        int port = ImplementorDaemon.DEFAULT_PORT;
+        int index = 0;
+        try {
+            if (args.length > 1 && "-port".equals(args[0])) {
+                port = Integer.parseInt(args[1]);
+                index = 2;
+            }
+        } catch (NumberFormatException e) {
+            printUsage();
+            return;
+        }
+        String mode = ImplementorDaemon.SOURCE;
+        if (args.length - index == 3 && "-jar".equals(args[index])) {
+            mode = ImplementorDaemon.JAR;
+            index++;
+        } else if (args.length - index == 3 && "-bytecode".equals(args[index])) {
+            mode = ImplementorDaemon.BYTECODE;
+            index++;
+        }
+        if (args.length - index != 2 || args[index] == null || args[index + 1] == null) {
+            printUsage();
+            return;
+        }
+        final String token;
+        try {
+            token = readToken(ImplementorDaemon.DEFAULT_TOKEN_FILE);
+        } catch (IOException e) {
+            System.err.println("Can't read token of daemon from " + ImplementorDaemon.DEFAULT_TOKEN_FILE + ": " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        try {
+            final String response = request(port, token, mode, args[index], Path.of(args[index + 1]));
+            if (response.startsWith("OK")) {
+                System.out.println(response);
+            } else {
+                System.err.println(response);
+                System.exit(1);
+            }
+        } catch (InvalidPathException e) {
+            System.err.println("Invalid path: " + args[index + 1]);
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("Can't reach daemon on port " + port + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
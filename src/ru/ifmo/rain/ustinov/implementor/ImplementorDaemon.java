@@ -0,0 +1,349 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived server generating implementations on request. <p>
+ * Daemon listens on loopback interface and keeps warm {@link Implementor}
+ * with its compiler, so requests do not pay JVM startup and compiler warm-up.
+ * Every request is a line of tab-separated fields {@code token mode className path},
+ * where mode is one of {@value #SOURCE}, {@value #JAR} or {@value #BYTECODE}.
+ * Response is a line {@code OK<tab>milliseconds} or {@code ERROR<tab>message}.
+ * Connection may carry any number of requests. <p>
+ * Token is random secret, that daemon writes on start to a file readable by its owner only,
+ * so only the owner of daemon may send requests. Output paths must be absolute and lie
+ * under root directory given to daemon. Classes are loaded by class loader of daemon
+ * without being initialized.
+ *
+ * @author Artem Ustinov
+ * @see ImplementorClient
+ */
+public class ImplementorDaemon implements AutoCloseable {
+    /**
+     * Default port of daemon.
+     */
+    public static final int DEFAULT_PORT = 28734;
+
+    /**
+     * Mode generating source file by {@link Implementor#implement(Class, Path)}.
+     */
+    public static final String SOURCE = "source";
+
+    /**
+     * Mode generating jar file by {@link Implementor#implementJar(Class, Path)}.
+     */
+    public static final String JAR = "jar";
+
+    /**
+     * Mode generating jar file by {@link Implementor#implementJar(Class, Path)} with bytecode backend.
+     */
+    public static final String BYTECODE = "bytecode";
+
+    /**
+     * Default file of token, {@code .implementor-daemon-token} in home directory of user.
+     */
+    public static final Path DEFAULT_TOKEN_FILE = Path.of(System.getProperty("user.home"), ".implementor-daemon-token");
+
+    /**
+     * Number of random bytes in token.
+     */
+    private static final int TOKEN_BYTES = 32;
+
+    /**
+     * Implementor compiling generated sources.
+     */
+    private final Implementor implementor = new Implementor();
+
+    /**
+     * Implementor emitting bytecode directly.
+     */
+    private final Implementor bytecodeImplementor = new Implementor(Implementor.Backend.BYTECODE);
+
+    /**
+     * Directory all output paths must lie under.
+     */
+    private final Path root;
+
+    /**
+     * File token is written to.
+     */
+    private final Path tokenFile;
+
+    /**
+     * Token expected in every request.
+     */
+    private final byte[] token;
+
+    /**
+     * Server socket accepting connections.
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * Workers serving connections.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Thread accepting connections.
+     */
+    private final Thread acceptor;
+
+    /**
+     * Starts daemon on given port of loopback interface and writes new token to given file.
+     *
+     * @param port      port to listen, {@code 0} for any free port
+     * @param threads   number of concurrently served connections
+     * @param root      directory all output paths must lie under
+     * @param tokenFile file to write token to, it is replaced if exists
+     * @throws IOException if port can not be bound or token can not be written
+     */
+    public ImplementorDaemon(int port, int threads, Path root, Path tokenFile) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.root = root.toRealPath();
+        this.tokenFile = tokenFile.toAbsolutePath();
+        final byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        final StringBuilder hex = new StringBuilder(2 * TOKEN_BYTES);
+        for (final byte b : random) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        token = hex.toString().getBytes(StandardCharsets.UTF_8);
+        writeToken(this.tokenFile, token);
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        workers = Executors.newFixedThreadPool(threads);
+        acceptor = new Thread(this::accept, "implementor-daemon");
+        acceptor.start();
+    }
+
+    /**
+     * Writes token to file readable by its owner only. Token is written to temporary file
+     * first, so it is never readable by others, even if target file was.
+     *
+     * @param file  token file
+     * @param token token to write
+     * @throws IOException if token can not be written
+     */
+    private static void writeToken(Path file, byte[] token) throws IOException {
+        final Path dir = file.getParent();
+        Files.createDirectories(dir);
+        final Path temp;
+        if (Files.getFileStore(dir).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            temp = Files.createTempFile(dir, ".implementor-token", ".tmp",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            temp = Files.createTempFile(dir, ".implementor-token", ".tmp");
+        }
+        try {
+            Files.write(temp, token);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns port daemon listens to.
+     *
+     * @return local port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until daemon is closed.
+     */
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                try {
+                    workers.submit(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Can't accept connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves requests of given connection until it is closed.
+     *
+     * @param socket client connection
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String request;
+            while ((request = reader.readLine()) != null) {
+                writer.write(handle(request));
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (IOException e) {
+            // Connection is broken, nothing to respond to.
+        }
+    }
+
+    /**
+     * Handles single request.
+     *
+     * @param request request line
+     * @return response line without line separator
+     */
+    private String handle(String request) {
+        final long start = System.nanoTime();
+        final String[] fields = request.split("\t", -1);
+        if (fields.length != 4) {
+            return "ERROR\tExpected token, mode, class name and path separated by tabs";
+        }
+        if (!MessageDigest.isEqual(token, fields[0].getBytes(StandardCharsets.UTF_8))) {
+            return "ERROR\tInvalid token";
+        }
+        final String mode = fields[1];
+        final String className = fields[2];
+        try {
+            final Path path = Path.of(fields[3]).normalize();
+            if (!isUnderRoot(path)) {
+                return "ERROR\tPath is outside of " + root + ": " + fields[3];
+            }
+            final Class<?> aClass = Class.forName(className, false, ImplementorDaemon.class.getClassLoader());
+            switch (mode) {
+                case SOURCE:
+                    implementor.implement(aClass, path);
+                    break;
+                case JAR:
+                    implementor.implementJar(aClass, path);
+                    break;
+                case BYTECODE:
+                    bytecodeImplementor.implementJar(aClass, path);
+                    break;
+                default:
+                    return "ERROR\tUnknown mode " + mode;
+            }
+        } catch (ClassNotFoundException e) {
+            return "ERROR\tClass " + className + " is not found.";
+        } catch (InvalidPathException e) {
+            return "ERROR\tInvalid path: " + fields[3];
+        } catch (ImplerException e) {
+            return "ERROR\tCan't implement class " + className + ": " + oneLine(e.getMessage());
+        } catch (RuntimeException | Error e) {
+            return "ERROR\tFailed to implement class " + className + ": " + oneLine(e.toString());
+        }
+        return "OK\t" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Checks, whether given path lies under root. Path must be absolute and its nearest
+     * existing ancestor must lie under root after symbolic links are resolved.
+     *
+     * @param path normalized path
+     * @return {@code true} if path lies under root
+     * @throws UncheckedIOException if real path of existing ancestor can not be resolved
+     */
+    private boolean isUnderRoot(Path path) {
+        if (!path.isAbsolute() || !path.startsWith(root)) {
+            return false;
+        }
+        Path existing = path;
+        while (!Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        try {
+            return existing.toRealPath().startsWith(root);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Replaces line separators in message by spaces.
+     *
+     * @param message message, may be {@code null}
+     * @return single line message
+     */
+    private static String oneLine(String message) {
+        return String.valueOf(message).replaceAll("\\R", " ");
+    }
+
+    /**
+     * Stops accepting connections and waits for served ones.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Socket is closed anyway.
+        }
+        workers.shutdown();
+        try {
+            Files.deleteIfExists(tokenFile);
+        } catch (IOException ignored) {
+            // Token is useless once daemon is stopped.
+        }
+        try {
+            acceptor.join();
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Starts daemon. <p>
+     * Usage: {@code ImplementorDaemon [port [threads [root]]]}, where root is directory
+     * all output paths must lie under, current directory by default.
+     * Token is written to {@link #DEFAULT_TOKEN_FILE}.
+     *
+     * @param args arguments for given program.
+     */
+    public static void main(String[] args) {
+        try {
+            final int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            final Path root = Path.of(args.length > 2 ? args[2] : "");
+            final ImplementorDaemon daemon = new ImplementorDaemon(port, threads, root, DEFAULT_TOKEN_FILE);
+            Runtime.getRuntime().addShutdownHook(new Thread(daemon::close));
+            System.out.println("Implementor daemon is listening on port " + daemon.getPort());
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: ImplementorDaemon [port [threads [root]]]");
+        } catch (InvalidPathException e) {
+            System.err.println("Invalid root: " + args[2]);
+        } catch (IOException e) {
+            System.err.println("Can't start daemon: " + e.getMessage());
+        }
+    }
+}
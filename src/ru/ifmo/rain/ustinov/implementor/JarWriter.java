@@ -0,0 +1,303 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes jar files with class files. <p>
+ * Entry names are separated by {@code '/'} and all entries have the same fixed timestamp,
+ * so equal classes always give byte-identical jars. Entries are compressed
+ * in parallel before being written, compression level {@code 0} stores them uncompressed.
+ */
+class JarWriter {
+    /**
+     * Contents of manifest.
+     */
+    private static final byte[] MANIFEST = "Manifest-Version: 1.0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Name of manifest entry.
+     */
+    private static final String MANIFEST_NAME = "META-INF/MANIFEST.MF";
+
+    /**
+     * Minimal number of entries compressed in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    /**
+     * MS-DOS date of all entries: January 1, 1980.
+     */
+    private static final int DOS_DATE = (1 << 5) | 1;
+
+    /**
+     * MS-DOS time of all entries: midnight.
+     */
+    private static final int DOS_TIME = 0;
+
+    /**
+     * General purpose flag marking names encoded in UTF-8.
+     */
+    private static final int UTF8_FLAG = 0x0800;
+
+    /**
+     * Compression method of stored entries.
+     */
+    private static final int STORED = 0;
+
+    /**
+     * Compression method of deflated entries.
+     */
+    private static final int DEFLATED = 8;
+
+    /**
+     * Maximal size of archive without ZIP64 extensions.
+     */
+    private static final long ZIP_LIMIT = 0xFFFFFFFFL;
+
+    /**
+     * Compression level of entries.
+     */
+    private final int level;
+
+    /**
+     * Creates writer with given compression level.
+     *
+     * @param level compression level from {@code 0} (store) to {@code 9},
+     *              or {@link Deflater#DEFAULT_COMPRESSION}
+     */
+    JarWriter(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < 0 || level > 9)) {
+            throw new IllegalArgumentException("Invalid compression level " + level);
+        }
+        this.level = level;
+    }
+
+    /**
+     * Compressed jar entry.
+     */
+    private static class Entry {
+        /**
+         * UTF-8 encoded name.
+         */
+        private final byte[] name;
+
+        /**
+         * Compression method.
+         */
+        private final int method;
+
+        /**
+         * CRC-32 of uncompressed data.
+         */
+        private final int crc;
+
+        /**
+         * Size of uncompressed data.
+         */
+        private final int size;
+
+        /**
+         * Compressed data.
+         */
+        private final byte[] data;
+
+        /**
+         * Offset of local header in archive.
+         */
+        private long offset;
+
+        /**
+         * Compresses given data.
+         *
+         * @param name  entry name
+         * @param bytes uncompressed data
+         * @param level compression level, {@code 0} for stored entry
+         */
+        Entry(String name, byte[] bytes, int level) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            final CRC32 crc32 = new CRC32();
+            crc32.update(bytes);
+            crc = (int) crc32.getValue();
+            size = bytes.length;
+            if (level == 0) {
+                method = STORED;
+                data = bytes;
+            } else {
+                method = DEFLATED;
+                final Deflater deflater = new Deflater(level, true);
+                try {
+                    deflater.setInput(bytes);
+                    deflater.finish();
+                    final ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+                    final byte[] buffer = new byte[8192];
+                    while (!deflater.finished()) {
+                        out.write(buffer, 0, deflater.deflate(buffer));
+                    }
+                    data = out.toByteArray();
+                } finally {
+                    deflater.end();
+                }
+            }
+        }
+    }
+
+    /**
+     * Output stream writing little-endian values and counting written bytes.
+     */
+    private static class ZipOutput {
+        /**
+         * Underlying stream.
+         */
+        private final OutputStream out;
+
+        /**
+         * Number of written bytes.
+         */
+        private long written;
+
+        /**
+         * Creates output to given stream.
+         *
+         * @param out underlying stream
+         */
+        ZipOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes two-byte value.
+         *
+         * @param value value to write
+         * @throws IOException if an I/O error occurs
+         */
+        void writeShort(int value) throws IOException {
+            out.write(value);
+            out.write(value >>> 8);
+            written += 2;
+        }
+
+        /**
+         * Writes four-byte value.
+         *
+         * @param value value to write
+         * @throws IOException if an I/O error occurs
+         */
+        void writeInt(long value) throws IOException {
+            writeShort((int) value);
+            writeShort((int) (value >>> 16));
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param bytes bytes to write
+         * @throws IOException if an I/O error occurs
+         */
+        void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            written += bytes.length;
+        }
+    }
+
+    /**
+     * Writes fields shared by local and central headers, from version needed to extract
+     * to length of extra field.
+     *
+     * @param out   archive output
+     * @param entry written entry
+     * @throws IOException if an I/O error occurs
+     */
+    private static void writeEntryFields(ZipOutput out, Entry entry) throws IOException {
+        out.writeShort(entry.method == STORED ? 10 : 20);
+        out.writeShort(UTF8_FLAG);
+        out.writeShort(entry.method);
+        out.writeShort(DOS_TIME);
+        out.writeShort(DOS_DATE);
+        out.writeInt(entry.crc);
+        out.writeInt(entry.data.length);
+        out.writeInt(entry.size);
+        out.writeShort(entry.name.length);
+        out.writeShort(0);
+    }
+
+    /**
+     * Writes jar with given class files and manifest.
+     *
+     * @param classes bytes of class files by binary names of classes
+     * @param path    path to jar file
+     * @throws ImplerException if jar can not be written
+     */
+    void write(SortedMap<String, byte[]> classes, Path path) throws ImplerException {
+        final List<Map.Entry<String, byte[]>> files = new ArrayList<>(classes.size() + 1);
+        files.add(Map.entry(MANIFEST_NAME, MANIFEST));
+        for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            files.add(Map.entry(entry.getKey().replace('.', '/') + ".class", entry.getValue()));
+        }
+        if (files.size() > 0xFFFF) {
+            throw new ImplerException("Too many entries for JAR file: " + files.size());
+        }
+        final Stream<Map.Entry<String, byte[]>> stream = files.size() >= PARALLEL_THRESHOLD
+                ? files.parallelStream() : files.stream();
+        final List<Entry> entries = stream
+                .map(file -> new Entry(file.getKey(), file.getValue(), level))
+                .collect(Collectors.toList());
+
+        try {
+            if (path.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(path.toAbsolutePath().getParent());
+            }
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(path))) {
+                final ZipOutput out = new ZipOutput(output);
+                for (final Entry entry : entries) {
+                    entry.offset = out.written;
+                    out.writeInt(0x04034b50);
+                    writeEntryFields(out, entry);
+                    out.write(entry.name);
+                    out.write(entry.data);
+                }
+                final long directoryOffset = out.written;
+                for (final Entry entry : entries) {
+                    out.writeInt(0x02014b50);
+                    out.writeShort(20);
+                    writeEntryFields(out, entry);
+                    out.writeShort(0);
+                    out.writeShort(0);
+                    out.writeShort(0);
+                    out.writeInt(0);
+                    out.writeInt(entry.offset);
+                    out.write(entry.name);
+                }
+                final long directorySize = out.written - directoryOffset;
+                if (out.written > ZIP_LIMIT) {
+                    throw new ImplerException("JAR file is too large: " + out.written + " bytes");
+                }
+                out.writeInt(0x06054b50);
+                out.writeShort(0);
+                out.writeShort(0);
+                out.writeShort(entries.size());
+                out.writeShort(entries.size());
+                out.writeInt(directorySize);
+                out.writeInt(directoryOffset);
+                out.writeShort(0);
+            }
+        } catch (IOException e) {
+            throw new ImplerException("Unable to write to JAR file", e);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles java sources without touching file system. <p>
+ * Sources are read from strings and compiled class files are kept in memory buffers.
+ */
+class MemoryCompiler {
+    /**
+     * System java compiler.
+     */
+    private final JavaCompiler compiler;
+
+    /**
+     * Creates compiler using system java compiler.
+     *
+     * @throws ImplerException if there is no system java compiler
+     */
+    MemoryCompiler() throws ImplerException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new ImplerException("Can not find java compiler.");
+        }
+    }
+
+    /**
+     * Source file with contents stored in string.
+     */
+    private static class SourceFile extends SimpleJavaFileObject {
+        /**
+         * Source code.
+         */
+        private final String code;
+
+        /**
+         * Creates source file of given class.
+         *
+         * @param className binary name of class
+         * @param code      source code of class
+         */
+        SourceFile(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * Class file with contents stored in memory buffer.
+     */
+    private static class ClassFile extends SimpleJavaFileObject {
+        /**
+         * Class file bytes.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Creates class file of given class.
+         *
+         * @param className binary name of class
+         */
+        ClassFile(String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    /**
+     * File manager writing class files to memory.
+     */
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        /**
+         * Compiled class files by binary names of classes.
+         */
+        private final SortedMap<String, ClassFile> classes = new TreeMap<>();
+
+        /**
+         * Creates file manager reading classes via given one.
+         *
+         * @param fileManager standard file manager
+         */
+        MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+            return classes.computeIfAbsent(className, ClassFile::new);
+        }
+    }
+
+    /**
+     * Compiles given sources.
+     *
+     * @param sources   source codes by binary names of classes
+     * @param classPath class path of compilation
+     * @return bytes of compiled class files by binary names of classes, including nested classes
+     * @throws ImplerException if sources can not be compiled
+     */
+    SortedMap<String, byte[]> compile(Map<String, String> sources, String classPath) throws ImplerException {
+        final List<JavaFileObject> files = sources.entrySet().stream()
+                .map(source -> new SourceFile(source.getKey(), source.getValue()))
+                .collect(Collectors.toList());
+        final List<String> options = new ArrayList<>();
+        if (!classPath.isEmpty()) {
+            options.add("-cp");
+            options.add(classPath);
+        }
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (MemoryFileManager fileManager = new MemoryFileManager(
+                compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8))) {
+            if (!compiler.getTask(null, fileManager, diagnostics, options, null, files).call()) {
+                throw new ImplerException("Can't compile file: " + diagnostics.getDiagnostics().stream()
+                        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+                        .map(diagnostic -> diagnostic.getMessage(null))
+                        .collect(Collectors.joining(System.lineSeparator())));
+            }
+            final SortedMap<String, byte[]> classes = new TreeMap<>();
+            fileManager.classes.forEach((name, file) -> classes.put(name, file.bytes.toByteArray()));
+            return classes;
+        } catch (IOException e) {
+            throw new ImplerException("Can't close file manager", e);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reflection metadata of class or interface required to implement it. <p>
+ * Metadata is computed once per class and shared by all generators. Abstract methods
+ * of a class are built from metadata of its superclass, so related types
+ * do not repeat the reflection walk over common superclasses.
+ */
+final class TypeMetadata {
+    /**
+     * Computed metadata by classes.
+     */
+    private static final ClassValue<TypeMetadata> CACHE = new ClassValue<>() {
+        @Override
+        protected TypeMetadata computeValue(Class<?> type) {
+            return new TypeMetadata(type);
+        }
+    };
+
+    /**
+     * Distinct abstract methods of class and its superclasses.
+     */
+    private final List<Method> abstractMethods;
+
+    /**
+     * Non-private constructors of class.
+     */
+    private final List<Constructor<?>> constructors;
+
+    /**
+     * Distinct public instance methods of class, including inherited ones.
+     */
+    private final List<Method> publicMethods;
+
+    /**
+     * Signature of method: its name and parameter types.
+     */
+    private static final class Signature {
+        /**
+         * Method name.
+         */
+        private final String name;
+
+        /**
+         * Method parameter types.
+         */
+        private final Class<?>[] parameterTypes;
+
+        /**
+         * Creates signature of given method.
+         *
+         * @param method method
+         */
+        Signature(Method method) {
+            name = method.getName();
+            parameterTypes = method.getParameterTypes();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            final Signature other = (Signature) o;
+            return name.equals(other.name) && Arrays.equals(parameterTypes, other.parameterTypes);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + Arrays.hashCode(parameterTypes);
+        }
+    }
+
+    /**
+     * Computes metadata of given class.
+     *
+     * @param type class or interface
+     */
+    private TypeMetadata(Class<?> type) {
+        final Map<Signature, Method> methods = new LinkedHashMap<>();
+        for (final Method method : type.getMethods()) {
+            addAbstractMethod(methods, method);
+        }
+        for (final Method method : type.getDeclaredMethods()) {
+            addAbstractMethod(methods, method);
+        }
+        if (type.getSuperclass() != null) {
+            for (final Method method : of(type.getSuperclass()).getAbstractMethods()) {
+                addAbstractMethod(methods, method);
+            }
+        }
+        abstractMethods = Collections.unmodifiableList(new ArrayList<>(methods.values()));
+
+        final List<Constructor<?>> nonPrivate = new ArrayList<>();
+        for (final Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (!Modifier.isPrivate(constructor.getModifiers())) {
+                nonPrivate.add(constructor);
+            }
+        }
+        constructors = Collections.unmodifiableList(nonPrivate);
+
+        final Map<Signature, Method> instanceMethods = new LinkedHashMap<>();
+        for (final Method method : type.getMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                addMethod(instanceMethods, method);
+            }
+        }
+        publicMethods = Collections.unmodifiableList(new ArrayList<>(instanceMethods.values()));
+    }
+
+    /**
+     * Adds given method to given methods, if it is abstract.
+     *
+     * @param methods distinct methods by signatures
+     * @param method  method to add
+     * @see #addMethod(Map, Method)
+     */
+    private static void addAbstractMethod(Map<Signature, Method> methods, Method method) {
+        if (Modifier.isAbstract(method.getModifiers())) {
+            addMethod(methods, method);
+        }
+    }
+
+    /**
+     * Adds given method to given methods. If there is method with the same signature,
+     * the one with more specific return type is kept, public one is preferred for equal return types.
+     *
+     * @param methods distinct methods by signatures
+     * @param method  method to add
+     */
+    private static void addMethod(Map<Signature, Method> methods, Method method) {
+        methods.merge(new Signature(method), method, (a, b) -> {
+            if (a.getReturnType() != b.getReturnType()) {
+                return a.getReturnType().isAssignableFrom(b.getReturnType()) ? b : a;
+            }
+            return !Modifier.isPublic(a.getModifiers()) && Modifier.isPublic(b.getModifiers()) ? b : a;
+        });
+    }
+
+    /**
+     * Returns metadata of given class.
+     *
+     * @param type class or interface
+     * @return cached metadata
+     */
+    static TypeMetadata of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Computes metadata of given class, bypassing cache for given class itself.
+     * Metadata of superclasses is still taken from cache.
+     *
+     * @param type class or interface
+     * @return new metadata
+     */
+    static TypeMetadata compute(Class<?> type) {
+        return new TypeMetadata(type);
+    }
+
+    /**
+     * Returns abstract methods of class and its superclasses, one per signature.
+     *
+     * @return unmodifiable list of methods
+     */
+    List<Method> getAbstractMethods() {
+        return abstractMethods;
+    }
+
+    /**
+     * Returns public instance methods of class, including inherited and default ones, one per signature.
+     *
+     * @return unmodifiable list of methods
+     */
+    List<Method> getPublicMethods() {
+        return publicMethods;
+    }
+
+    /**
+     * Returns non-private constructors of class.
+     *
+     * @return unmodifiable list of constructors, empty for interfaces
+     */
+    List<Constructor<?>> getConstructors() {
+        return constructors;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.ifmo.rain.ustinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+/**
+ * Unchecked wrapper of {@link ImplerException}, thrown from streams and
+ * {@link ClassValue#computeValue(Class)}, where checked exceptions are not allowed.
+ */
+class UncheckedImplerException extends RuntimeException {
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Wraps given exception.
+     *
+     * @param cause wrapped exception
+     */
+    UncheckedImplerException(ImplerException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized ImplerException getCause() {
+        return (ImplerException) super.getCause();
+    }
+}
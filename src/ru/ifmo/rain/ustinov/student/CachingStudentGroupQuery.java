@@ -0,0 +1,274 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Group;
+import info.kgeorgiy.java.advanced.student.Student;
+import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Memoizing decorator of {@link StudentGroupQuery}. <p>
+ * Results are cached per roster, roster version, method and arguments.
+ * Rosters are compared by identity; {@link ConcurrentRoster.Snapshot snapshots} are immutable
+ * and carry their version, while any other collection must be {@link #invalidate(Collection) invalidated}
+ * explicitly after modification. Least recently used results are evicted when cache is full.
+ * Rosters are referenced weakly, so results for rosters dropped by callers are removed
+ * once rosters are garbage collected.
+ * All returned collections are immutable, so they are safely shared between callers.
+ */
+public class CachingStudentGroupQuery implements StudentGroupQuery {
+    private final StudentGroupQuery delegate;
+    private final int capacity;
+    private final Map<Key, Object> cache;
+    private final ReferenceQueue<Collection<Student>> collected = new ReferenceQueue<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates caching decorator.
+     *
+     * @param delegate query implementation computing results
+     * @param capacity maximal number of cached results
+     */
+    public CachingStudentGroupQuery(StudentGroupQuery delegate, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.delegate = Objects.requireNonNull(delegate);
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+                if (size() > CachingStudentGroupQuery.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private static final class Key {
+        private final WeakReference<Collection<Student>> roster;
+        private final int rosterHash;
+        private final long version;
+        private final String method;
+        private final Object argument;
+
+        private Key(Collection<Student> roster, String method, Object argument, ReferenceQueue<Collection<Student>> queue) {
+            this.roster = new WeakReference<>(roster, queue);
+            this.rosterHash = System.identityHashCode(roster);
+            this.version = roster instanceof ConcurrentRoster.Snapshot ? ((ConcurrentRoster.Snapshot) roster).version() : 0;
+            this.method = method;
+            this.argument = argument;
+        }
+
+        private boolean isFor(Collection<Student> roster) {
+            return this.roster.get() == roster;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                final Key that = (Key) obj;
+                final Collection<Student> roster = this.roster.get();
+                return roster != null && that.isFor(roster) && version == that.version
+                        && method.equals(that.method) && Objects.equals(argument, that.argument);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rosterHash, version, method, argument);
+        }
+    }
+
+    /**
+     * Removes results for collected rosters. Must be called under lock of cache.
+     */
+    private void expunge() {
+        boolean cleared = false;
+        while (collected.poll() != null) {
+            cleared = true;
+        }
+        if (cleared) {
+            cache.keySet().removeIf(key -> key.roster.get() == null);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R> R cached(Collection<Student> roster, String method, Object argument, Supplier<R> compute) {
+        final Key key = new Key(roster, method, argument, null);
+        synchronized (cache) {
+            expunge();
+            final Object result = cache.get(key);
+            if (result != null) {
+                hits.increment();
+                return (R) result;
+            }
+        }
+        misses.increment();
+        final R result = compute.get();
+        synchronized (cache) {
+            cache.put(new Key(roster, method, argument, collected), result);
+        }
+        return result;
+    }
+
+    private <R> R cached(Collection<Student> roster, String method, Supplier<R> compute) {
+        return cached(roster, method, null, compute);
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void invalidate() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Removes cached results for given roster. Should be called after roster modification.
+     *
+     * @param roster modified roster
+     */
+    public void invalidate(Collection<Student> roster) {
+        synchronized (cache) {
+            expunge();
+            cache.keySet().removeIf(key -> key.isFor(roster));
+        }
+    }
+
+    /**
+     * Returns number of calls answered from cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns number of calls computed by delegate.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns number of results evicted from full cache.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns fraction of calls answered from cache or {@code 0} if there were no calls.
+     */
+    public double getHitRate() {
+        final long hits = getHits();
+        final long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public List<Group> getGroupsByName(Collection<Student> collection) {
+        return cached(collection, "getGroupsByName", () -> List.copyOf(delegate.getGroupsByName(collection)));
+    }
+
+    @Override
+    public List<Group> getGroupsById(Collection<Student> collection) {
+        return cached(collection, "getGroupsById", () -> List.copyOf(delegate.getGroupsById(collection)));
+    }
+
+    @Override
+    public String getLargestGroup(Collection<Student> collection) {
+        return cached(collection, "getLargestGroup", () -> delegate.getLargestGroup(collection));
+    }
+
+    @Override
+    public String getLargestGroupFirstName(Collection<Student> collection) {
+        return cached(collection, "getLargestGroupFirstName", () -> delegate.getLargestGroupFirstName(collection));
+    }
+
+    @Override
+    public List<String> getFirstNames(List<Student> list) {
+        return cached(list, "getFirstNames", () -> List.copyOf(delegate.getFirstNames(list)));
+    }
+
+    @Override
+    public List<String> getLastNames(List<Student> list) {
+        return cached(list, "getLastNames", () -> List.copyOf(delegate.getLastNames(list)));
+    }
+
+    @Override
+    public List<String> getGroups(List<Student> list) {
+        return cached(list, "getGroups", () -> List.copyOf(delegate.getGroups(list)));
+    }
+
+    @Override
+    public List<String> getFullNames(List<Student> list) {
+        return cached(list, "getFullNames", () -> List.copyOf(delegate.getFullNames(list)));
+    }
+
+    @Override
+    public Set<String> getDistinctFirstNames(List<Student> list) {
+        return cached(list, "getDistinctFirstNames",
+                () -> Collections.unmodifiableSortedSet(new TreeSet<>(delegate.getDistinctFirstNames(list))));
+    }
+
+    @Override
+    public String getMinStudentFirstName(List<Student> list) {
+        return cached(list, "getMinStudentFirstName", () -> delegate.getMinStudentFirstName(list));
+    }
+
+    @Override
+    public List<Student> sortStudentsById(Collection<Student> collection) {
+        return cached(collection, "sortStudentsById", () -> List.copyOf(delegate.sortStudentsById(collection)));
+    }
+
+    @Override
+    public List<Student> sortStudentsByName(Collection<Student> collection) {
+        return cached(collection, "sortStudentsByName", () -> List.copyOf(delegate.sortStudentsByName(collection)));
+    }
+
+    @Override
+    public List<Student> findStudentsByFirstName(Collection<Student> collection, String s) {
+        return cached(collection, "findStudentsByFirstName", s,
+                () -> List.copyOf(delegate.findStudentsByFirstName(collection, s)));
+    }
+
+    @Override
+    public List<Student> findStudentsByLastName(Collection<Student> collection, String s) {
+        return cached(collection, "findStudentsByLastName", s,
+                () -> List.copyOf(delegate.findStudentsByLastName(collection, s)));
+    }
+
+    @Override
+    public List<Student> findStudentsByGroup(Collection<Student> collection, String s) {
+        return cached(collection, "findStudentsByGroup", s,
+                () -> List.copyOf(delegate.findStudentsByGroup(collection, s)));
+    }
+
+    @Override
+    public Map<String, String> findStudentNamesByGroup(Collection<Student> collection, String group) {
+        return cached(collection, "findStudentNamesByGroup", group,
+                () -> Map.copyOf(delegate.findStudentNamesByGroup(collection, group)));
+    }
+}
@@ -0,0 +1,240 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Roster of students for read-heavy concurrent access. <p>
+ * Roster state is published as immutable versioned {@link Snapshot snapshots}.
+ * Readers get current snapshot without locking and see consistent view of students,
+ * while updates are serialized and publish new snapshot atomically.
+ * Students are stored in chunks, so new snapshot shares all unchanged chunks with the previous one.
+ * Every chunk is accompanied by sorted ids of its students, so updates locate affected chunks
+ * by binary search instead of scanning students.
+ */
+public class ConcurrentRoster {
+    /**
+     * Maximal number of students in chunk.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Chunks smaller than this are merged with adjacent ones, when roster is written.
+     */
+    private static final int MIN_CHUNK_SIZE = CHUNK_SIZE / 4;
+
+    private final AtomicReference<Snapshot> current =
+            new AtomicReference<>(new Snapshot(0, new Student[0][], new int[0][], new int[0]));
+
+    /**
+     * Returns current snapshot.
+     *
+     * @return latest published snapshot
+     */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    private static int[] sortedIds(Student[] chunk) {
+        final int[] ids = new int[chunk.length];
+        for (int i = 0; i < chunk.length; i++) {
+            ids[i] = chunk[i].getId();
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private Snapshot publish(Student[][] chunks, int[][] ids) {
+        final int[] ends = new int[chunks.length];
+        for (int i = 0, size = 0; i < chunks.length; i++) {
+            ends[i] = size += chunks[i].length;
+        }
+        final Snapshot snapshot = new Snapshot(current.get().version + 1, chunks, ids, ends);
+        current.set(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Adds student to the roster.
+     *
+     * @param student student to add
+     * @return published snapshot
+     */
+    public synchronized Snapshot add(Student student) {
+        return addAll(List.of(student));
+    }
+
+    /**
+     * Adds students to the roster.
+     *
+     * @param students students to add
+     * @return published snapshot
+     */
+    public synchronized Snapshot addAll(Collection<Student> students) {
+        final Student[][] previous = current.get().chunks;
+        final int[][] previousIds = current.get().ids;
+        final Student[] added = students.toArray(new Student[0]);
+        int last = previous.length - 1;
+        final int free = last < 0 ? 0 : CHUNK_SIZE - previous[last].length;
+        final int fill = Math.min(free, added.length);
+        final Student[][] chunks = Arrays.copyOf(previous,
+                previous.length + (added.length - fill + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        final int[][] ids = Arrays.copyOf(previousIds, chunks.length);
+        if (fill > 0) {
+            chunks[last] = Arrays.copyOf(previous[last], previous[last].length + fill);
+            System.arraycopy(added, 0, chunks[last], previous[last].length, fill);
+            ids[last] = sortedIds(chunks[last]);
+        }
+        for (int from = fill; from < added.length; from += CHUNK_SIZE) {
+            chunks[++last] = Arrays.copyOfRange(added, from, Math.min(from + CHUNK_SIZE, added.length));
+            ids[last] = sortedIds(chunks[last]);
+        }
+        return publish(chunks, ids);
+    }
+
+    /**
+     * Removes students with given id from the roster.
+     * Chunks containing removed students are found by binary search over their sorted ids,
+     * and only they are copied. Chunks smaller than {@link #MIN_CHUNK_SIZE}
+     * are merged with adjacent ones, while merged chunk fits into {@link #CHUNK_SIZE},
+     * so removals do not leave roster fragmented.
+     *
+     * @param id id of students to remove
+     * @return published snapshot
+     */
+    public synchronized Snapshot remove(int id) {
+        final Student[][] previous = current.get().chunks;
+        final int[][] previousIds = current.get().ids;
+        final Student[][] chunks = new Student[previous.length][];
+        final int[][] ids = new int[previous.length][];
+        int count = 0;
+        for (int i = 0; i < previous.length; i++) {
+            Student[] chunk = previous[i];
+            int[] chunkIds = previousIds[i];
+            if (Arrays.binarySearch(chunkIds, id) >= 0) {
+                chunk = Arrays.stream(chunk).filter(student -> student.getId() != id).toArray(Student[]::new);
+                chunkIds = Arrays.stream(chunkIds).filter(other -> other != id).toArray();
+            }
+            if (chunk.length == 0) {
+                continue;
+            }
+            final Student[] last = count == 0 ? null : chunks[count - 1];
+            if (last != null && (last.length < MIN_CHUNK_SIZE || chunk.length < MIN_CHUNK_SIZE)
+                    && last.length + chunk.length <= CHUNK_SIZE) {
+                final Student[] merged = Arrays.copyOf(last, last.length + chunk.length);
+                System.arraycopy(chunk, 0, merged, last.length, chunk.length);
+                chunks[count - 1] = merged;
+                ids[count - 1] = sortedIds(merged);
+            } else {
+                chunks[count] = chunk;
+                ids[count++] = chunkIds;
+            }
+        }
+        return publish(Arrays.copyOf(chunks, count), Arrays.copyOf(ids, count));
+    }
+
+    /**
+     * Immutable versioned state of {@link ConcurrentRoster}. <p>
+     * Snapshot is unmodifiable list of students in insertion order.
+     * Derived structures are computed on first request and cached in the snapshot.
+     */
+    public static final class Snapshot extends AbstractList<Student> implements RandomAccess {
+        private final long version;
+        private final Student[][] chunks;
+        private final int[][] ids;
+        private final int[] ends;
+
+        private volatile List<Student> sortedById;
+        private volatile List<Student> sortedByName;
+        private volatile Map<String, List<Student>> groups;
+
+        private Snapshot(long version, Student[][] chunks, int[][] ids, int[] ends) {
+            this.version = version;
+            this.chunks = chunks;
+            this.ids = ids;
+            this.ends = ends;
+        }
+
+        /**
+         * Returns version of snapshot. Each update of roster increments version.
+         */
+        public long version() {
+            return version;
+        }
+
+        @Override
+        public Student get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int chunk = Arrays.binarySearch(ends, index);
+            chunk = chunk < 0 ? -chunk - 1 : chunk + 1;
+            return chunks[chunk][index - (chunk == 0 ? 0 : ends[chunk - 1])];
+        }
+
+        @Override
+        public int size() {
+            return ends.length == 0 ? 0 : ends[ends.length - 1];
+        }
+
+        /**
+         * Returns students in {@link Query#BY_ID id order}.
+         *
+         * @return cached unmodifiable list
+         */
+        public List<Student> sortedById() {
+            if (sortedById == null) {
+                sortedById = Collections.unmodifiableList(IdSort.sort(this));
+            }
+            return sortedById;
+        }
+
+        /**
+         * Returns students in {@link Query#BY_NAME name order}.
+         *
+         * @return cached unmodifiable list
+         */
+        public List<Student> sortedByName() {
+            if (sortedByName == null) {
+                sortedByName = Collections.unmodifiableList(Query.from(this).orderByName().list());
+            }
+            return sortedByName;
+        }
+
+        /**
+         * Returns students grouped by {@link Student#getGroup() group}. Groups are ordered by name,
+         * students within group are in snapshot order.
+         *
+         * @return cached unmodifiable map
+         */
+        public Map<String, List<Student>> groups() {
+            if (groups == null) {
+                groups = Collections.unmodifiableMap(stream().collect(Collectors.groupingBy(
+                        Student::getGroup,
+                        TreeMap::new,
+                        Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList)
+                )));
+            }
+            return groups;
+        }
+
+        /**
+         * Creates query over this snapshot, using its {@link #groups() group index}.
+         *
+         * @return new query
+         */
+        public Query query() {
+            return Query.from(this).usingGroupIndex(groups());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stable sort of students by {@link Student#getId() id} without comparisons. <p>
+ * Ids are copied into primitive array, and permutation of indices is sorted
+ * with counting sort if ids are dense, or with LSD radix sort otherwise.
+ */
+final class IdSort {
+    /**
+     * Bits per radix sort pass.
+     */
+    private static final int RADIX_BITS = 8;
+
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    /**
+     * Counting sort is used, if range of ids is at most this times larger than number of ids.
+     */
+    private static final int DENSITY = 2;
+
+    private IdSort() {
+    }
+
+    /**
+     * Returns students sorted by id. Students with equal ids keep their relative order.
+     *
+     * @param students students to sort
+     * @return new list of sorted students
+     */
+    static List<Student> sort(List<Student> students) {
+        final int[] ids = new int[students.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = students.get(i).getId();
+        }
+        final int[] permutation = permutation(ids);
+        final List<Student> result = new ArrayList<>(ids.length);
+        for (final int index : permutation) {
+            result.add(students.get(index));
+        }
+        return result;
+    }
+
+    /**
+     * Returns stable sorting permutation of given ids:
+     * {@code ids[permutation[0]] <= ids[permutation[1]] <= ...}.
+     *
+     * @param ids ids to sort, left unchanged
+     * @return indices of ids in sorted order
+     */
+    static int[] permutation(int[] ids) {
+        final int n = ids.length;
+        if (n == 0) {
+            return new int[0];
+        }
+        int min = ids[0];
+        int max = ids[0];
+        for (final int id : ids) {
+            min = Math.min(min, id);
+            max = Math.max(max, id);
+        }
+        final long range = (long) max - min + 1;
+        return range <= (long) DENSITY * n ? countingSort(ids, min, (int) range) : radixSort(ids);
+    }
+
+    private static int[] countingSort(int[] ids, int min, int range) {
+        final int[] starts = new int[range + 1];
+        for (final int id : ids) {
+            starts[id - min + 1]++;
+        }
+        for (int i = 1; i <= range; i++) {
+            starts[i] += starts[i - 1];
+        }
+        final int[] permutation = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            permutation[starts[ids[i] - min]++] = i;
+        }
+        return permutation;
+    }
+
+    private static int[] radixSort(int[] ids) {
+        final int n = ids.length;
+        int[] keys = new int[n];
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = ids[i] ^ Integer.MIN_VALUE;
+            permutation[i] = i;
+        }
+        int[] nextKeys = new int[n];
+        int[] nextPermutation = new int[n];
+        final int[] starts = new int[RADIX];
+        for (int shift = 0; shift < Integer.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(starts, 0);
+            for (final int key : keys) {
+                starts[(key >>> shift) & (RADIX - 1)]++;
+            }
+            if (starts[(keys[0] >>> shift) & (RADIX - 1)] == n) {
+                continue;
+            }
+            for (int i = 0, sum = 0; i < RADIX; i++) {
+                final int count = starts[i];
+                starts[i] = sum;
+                sum += count;
+            }
+            for (int i = 0; i < n; i++) {
+                final int position = starts[(keys[i] >>> shift) & (RADIX - 1)]++;
+                nextKeys[position] = keys[i];
+                nextPermutation[position] = permutation[i];
+            }
+            int[] t = keys;
+            keys = nextKeys;
+            nextKeys = t;
+            t = permutation;
+            permutation = nextPermutation;
+            nextPermutation = t;
+        }
+        return permutation;
+    }
+}
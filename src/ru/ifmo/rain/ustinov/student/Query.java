@@ -0,0 +1,411 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Query over collection of {@link Student students}. <p>
+ * Query is described by predicates, order, offset, limit and projection,
+ * and is executed by {@link #list()} or {@link #select(Function)} according to the plan:
+ * <ol>
+ * <li>group index lookup, if group is fixed and {@link #usingGroupIndex(Map) index} is given;</li>
+ * <li>filters, cheapest first: id, then group, last and first names, then custom predicates;</li>
+ * <li>keyset cursor, if {@link #after(Student)} is given;</li>
+ * <li>bounded heap top-k if both order and limit are given, full sort if only order is given,
+ * which is {@link IdSort radix or counting sort} for {@link #orderById() id order};</li>
+ * <li>offset and limit;</li>
+ * <li>projection.</li>
+ * </ol>
+ * Queries are mutable and not thread-safe.
+ *
+ * @see StudentDB
+ */
+public class Query {
+    /**
+     * Name order: by last name, then by first name, then by id.
+     */
+    public static final Comparator<Student> BY_NAME =
+            Comparator.comparing(Student::getLastName)
+                    .thenComparing(Student::getFirstName)
+                    .thenComparingInt(Student::getId);
+
+    /**
+     * Id order.
+     */
+    public static final Comparator<Student> BY_ID = Comparator.comparingInt(Student::getId);
+
+    private final Collection<Student> students;
+    private boolean parallel;
+    private Map<String, ? extends Collection<Student>> groupIndex;
+
+    private Integer id;
+    private String group;
+    private String lastName;
+    private String firstName;
+    private final List<Predicate<? super Student>> predicates = new ArrayList<>();
+
+    private Comparator<Student> order;
+    private Student after;
+    private int offset;
+    private int limit = -1;
+
+    private Query(Collection<Student> students) {
+        this.students = students;
+    }
+
+    /**
+     * Creates query over given students.
+     *
+     * @param students students to query
+     * @return new query selecting all given students
+     */
+    public static Query from(Collection<Student> students) {
+        return new Query(students);
+    }
+
+    /**
+     * Sets whether query is executed on parallel stream.
+     *
+     * @param parallel {@code true} for parallel execution
+     * @return this query
+     */
+    public Query parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Sets index of the same students by groups, used when group is {@link #whereGroup(String) fixed}.
+     *
+     * @param groupIndex students grouped by {@link Student#getGroup() group}
+     * @return this query
+     */
+    public Query usingGroupIndex(Map<String, ? extends Collection<Student>> groupIndex) {
+        this.groupIndex = groupIndex;
+        return this;
+    }
+
+    /**
+     * Selects students with given {@link Student#getId() id}.
+     *
+     * @return this query
+     */
+    public Query whereId(int id) {
+        this.id = id;
+        return this;
+    }
+
+    /**
+     * Selects students of given {@link Student#getGroup() group}.
+     *
+     * @return this query
+     */
+    public Query whereGroup(String group) {
+        this.group = group;
+        return this;
+    }
+
+    /**
+     * Selects students with given {@link Student#getLastName() last name}.
+     *
+     * @return this query
+     */
+    public Query whereLastName(String lastName) {
+        this.lastName = lastName;
+        return this;
+    }
+
+    /**
+     * Selects students with given {@link Student#getFirstName() first name}.
+     *
+     * @return this query
+     */
+    public Query whereFirstName(String firstName) {
+        this.firstName = firstName;
+        return this;
+    }
+
+    /**
+     * Selects students satisfying given predicate.
+     *
+     * @return this query
+     */
+    public Query where(Predicate<? super Student> predicate) {
+        predicates.add(predicate);
+        return this;
+    }
+
+    /**
+     * Orders students by name.
+     *
+     * @return this query
+     * @see #BY_NAME
+     */
+    public Query orderByName() {
+        return orderBy(BY_NAME);
+    }
+
+    /**
+     * Orders students by id.
+     *
+     * @return this query
+     * @see #BY_ID
+     */
+    public Query orderById() {
+        return orderBy(BY_ID);
+    }
+
+    /**
+     * Orders students by given comparator. Sort is stable.
+     *
+     * @return this query
+     */
+    public Query orderBy(Comparator<Student> order) {
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * Selects only students following given one in query order (keyset cursor).
+     *
+     * @param after last student of the previous page or {@code null} for the first page
+     * @return this query
+     * @throws IllegalStateException if query is not ordered
+     */
+    public Query after(Student after) {
+        if (after != null && order == null) {
+            throw new IllegalStateException("Cursor requires ordered query");
+        }
+        this.after = after;
+        return this;
+    }
+
+    /**
+     * Skips given number of first students.
+     *
+     * @return this query
+     */
+    public Query offset(int offset) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must be non-negative");
+        }
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Limits number of selected students.
+     *
+     * @return this query
+     */
+    public Query limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must be non-negative");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    private boolean isIndexed() {
+        return group != null && groupIndex != null;
+    }
+
+    private Stream<Student> scan() {
+        Collection<Student> source = students;
+        if (isIndexed()) {
+            final Collection<Student> indexed = groupIndex.get(group);
+            source = indexed == null ? List.of() : indexed;
+        }
+        Stream<Student> stream = parallel ? source.parallelStream() : source.stream();
+        if (id != null) {
+            final int id = this.id;
+            stream = stream.filter(student -> student.getId() == id);
+        }
+        if (group != null && !isIndexed()) {
+            stream = stream.filter(student -> student.getGroup().equals(group));
+        }
+        if (lastName != null) {
+            stream = stream.filter(student -> student.getLastName().equals(lastName));
+        }
+        if (firstName != null) {
+            stream = stream.filter(student -> student.getFirstName().equals(firstName));
+        }
+        for (final Predicate<? super Student> predicate : predicates) {
+            stream = stream.filter(predicate);
+        }
+        if (after != null) {
+            stream = stream.filter(student -> order.compare(student, after) > 0);
+        }
+        return stream;
+    }
+
+    /**
+     * Student with its position in encounter order, used to break ties of query order.
+     */
+    private static final class Ranked {
+        private final Student student;
+        private final long rank;
+
+        private Ranked(Student student, long rank) {
+            this.student = student;
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * Bounded max-heap of {@code k} first students and number of students offered to it.
+     */
+    private static final class TopK {
+        private final Comparator<Ranked> order;
+        private final int k;
+        private final PriorityQueue<Ranked> heap;
+        private long count;
+
+        private TopK(Comparator<Ranked> order, int k) {
+            this.order = order;
+            this.k = k;
+            this.heap = new PriorityQueue<>(order.reversed());
+        }
+
+        private void offer(Ranked ranked) {
+            if (heap.size() < k) {
+                heap.add(ranked);
+            } else if (order.compare(ranked, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ranked);
+            }
+        }
+
+        private void add(Student student) {
+            offer(new Ranked(student, count++));
+        }
+
+        /**
+         * Merges heap of students following students of this heap in encounter order.
+         */
+        private TopK merge(TopK right) {
+            for (final Ranked ranked : right.heap) {
+                offer(new Ranked(ranked.student, count + ranked.rank));
+            }
+            count += right.count;
+            return this;
+        }
+    }
+
+    /**
+     * Collects {@code k} first students in given order using bounded max-heap in {@code O(n log k)}.
+     * Students equal in given order keep their encounter order.
+     */
+    private static Collector<Student, ?, List<Student>> first(Comparator<Student> order, int k) {
+        final Comparator<Ranked> ranked = Comparator.<Ranked, Student>comparing(r -> r.student, order)
+                .thenComparingLong(r -> r.rank);
+        return Collector.of(
+                () -> new TopK(ranked, k),
+                TopK::add,
+                TopK::merge,
+                topK -> {
+                    final List<Ranked> result = new ArrayList<>(topK.heap);
+                    result.sort(ranked);
+                    return result.stream().map(r -> r.student).collect(Collectors.toList());
+                });
+    }
+
+    private <R> List<R> execute(Function<? super Student, ? extends R> projection) {
+        if (limit == 0) {
+            return new ArrayList<>();
+        }
+        Stream<Student> stream = scan();
+        if (order != null && limit > 0) {
+            final List<Student> first = stream.collect(first(order, (int) Math.min((long) offset + limit, Integer.MAX_VALUE)));
+            stream = (parallel ? first.parallelStream() : first.stream()).skip(offset);
+        } else if (order == BY_ID) {
+            final List<Student> sorted = IdSort.sort(stream.collect(Collectors.toList()));
+            stream = (parallel ? sorted.parallelStream() : sorted.stream()).skip(offset);
+        } else {
+            if (order != null) {
+                stream = stream.sorted(order);
+            }
+            stream = stream.skip(offset);
+            if (limit > 0) {
+                stream = stream.limit(limit);
+            }
+        }
+        return stream.map(projection).collect(Collectors.toList());
+    }
+
+    /**
+     * Executes query.
+     *
+     * @return selected students
+     */
+    public List<Student> list() {
+        return execute(Function.identity());
+    }
+
+    /**
+     * Executes query, projecting selected students.
+     *
+     * @param projection function applied to each selected student
+     * @param <R>        projection type
+     * @return projections of selected students
+     */
+    public <R> List<R> select(Function<? super Student, ? extends R> projection) {
+        return execute(projection);
+    }
+
+    /**
+     * Describes execution plan of this query.
+     *
+     * @return human-readable plan
+     */
+    public String explain() {
+        final StringJoiner plan = new StringJoiner(" -> ");
+        plan.add(isIndexed() ? "index(group)" : "scan" + (parallel ? "(parallel)" : ""));
+        final StringJoiner filters = new StringJoiner(", ", "filter(", ")").setEmptyValue("");
+        if (id != null) {
+            filters.add("id");
+        }
+        if (group != null && !isIndexed()) {
+            filters.add("group");
+        }
+        if (lastName != null) {
+            filters.add("lastName");
+        }
+        if (firstName != null) {
+            filters.add("firstName");
+        }
+        if (!predicates.isEmpty()) {
+            filters.add(predicates.size() + " predicates");
+        }
+        if (after != null) {
+            filters.add("cursor");
+        }
+        if (filters.length() > 0) {
+            plan.add(filters.toString());
+        }
+        if (limit == 0) {
+            return "empty";
+        } else if (order != null) {
+            plan.add(limit > 0 ? "top(" + ((long) offset + limit) + ")" : order == BY_ID ? "radix sort" : "sort");
+        }
+        if (offset > 0) {
+            plan.add("skip(" + offset + ")");
+        }
+        if (limit > 0 && order == null) {
+            plan.add("limit(" + limit + ")");
+        }
+        return plan.add("project").toString();
+    }
+}
@@ -0,0 +1,76 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic rosters for benchmarks. <p>
+ * Full names are drawn uniformly from {@code names} distinct ones,
+ * groups are drawn from {@code groups} ones by Zipf distribution with exponent {@code skew}
+ * ({@code 0} gives uniform distribution). Equal seeds give equal rosters.
+ */
+class RosterGenerator {
+    private final int names;
+    private final double[] groupWeights;
+    private final long seed;
+
+    /**
+     * Creates generator.
+     *
+     * @param names  number of distinct full names
+     * @param groups number of distinct groups
+     * @param skew   Zipf exponent of group sizes
+     * @param seed   random seed
+     */
+    RosterGenerator(int names, int groups, double skew, long seed) {
+        if (names <= 0 || groups <= 0 || skew < 0) {
+            throw new IllegalArgumentException("Invalid roster parameters");
+        }
+        this.names = names;
+        this.seed = seed;
+        groupWeights = new double[groups];
+        double sum = 0;
+        for (int i = 0; i < groups; i++) {
+            groupWeights[i] = sum += 1 / Math.pow(i + 1, skew);
+        }
+        for (int i = 0; i < groups; i++) {
+            groupWeights[i] /= sum;
+        }
+    }
+
+    private int nextGroup(Random random) {
+        final int index = Arrays.binarySearch(groupWeights, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, groupWeights.length - 1);
+    }
+
+    /**
+     * Generates roster.
+     *
+     * @param size number of students
+     * @return generated students with distinct ids from {@code 1} to {@code size} in random order
+     */
+    List<Student> generate(int size) {
+        final Random random = new Random(seed);
+        final int[] ids = new int[size];
+        for (int i = 0; i < size; i++) {
+            final int j = random.nextInt(i + 1);
+            ids[i] = ids[j];
+            ids[j] = i + 1;
+        }
+        final List<Student> students = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final int name = random.nextInt(names);
+            students.add(new Student(
+                    ids[i],
+                    "First" + name % 1000,
+                    "Last" + name / 1000,
+                    "M" + nextGroup(random)
+            ));
+        }
+        return students;
+    }
+}
@@ -0,0 +1,264 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Parallel loader of delimited roster files. <p>
+ * Every line of roster file describes a student as
+ * {@code id<delimiter>firstName<delimiter>lastName<delimiter>group} in UTF-8;
+ * empty lines are ignored. File is memory-mapped and split into chunks at line boundaries,
+ * chunks are parsed in parallel. Ids are parsed directly from bytes, and equal names and groups
+ * are shared through dictionary, so each distinct string is decoded once per chunk.
+ */
+public class RosterLoader {
+    /**
+     * Approximate size of chunk parsed by single task.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final byte delimiter;
+
+    /**
+     * Creates loader of roster with given field delimiter, e.g. {@code ','} or {@code '\t'}.
+     *
+     * @param delimiter ASCII delimiter of fields
+     */
+    public RosterLoader(char delimiter) {
+        if (delimiter >= 128 || delimiter == '\n' || delimiter == '\r' || delimiter == '-'
+                || Character.isDigit(delimiter)) {
+            throw new IllegalArgumentException("Invalid delimiter " + delimiter);
+        }
+        this.delimiter = (byte) delimiter;
+    }
+
+    /**
+     * Loads students from roster file.
+     *
+     * @param file roster file
+     * @return students in file order
+     * @throws IOException if file cannot be read or is malformed
+     */
+    public List<Student> load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Roster file is too large: " + channel.size());
+            }
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            final Map<String, String> dictionary = new ConcurrentHashMap<>();
+            final List<List<Student>> chunks;
+            try {
+                chunks = split(buffer).parallelStream()
+                        .map(chunk -> new ChunkParser(buffer, dictionary).parse(chunk[0], chunk[1]))
+                        .collect(Collectors.toList());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            final List<Student> students = new ArrayList<>(chunks.stream().mapToInt(List::size).sum());
+            chunks.forEach(students::addAll);
+            return students;
+        }
+    }
+
+    /**
+     * Loads students from roster file and adds them to given roster.
+     *
+     * @param file   roster file
+     * @param roster roster to add students to
+     * @return published snapshot of roster
+     * @throws IOException if file cannot be read or is malformed
+     */
+    public ConcurrentRoster.Snapshot load(Path file, ConcurrentRoster roster) throws IOException {
+        return roster.addAll(load(file));
+    }
+
+    private static List<int[]> split(ByteBuffer buffer) {
+        final List<int[]> chunks = new ArrayList<>();
+        final int limit = buffer.limit();
+        int from = 0;
+        while (from < limit) {
+            int to = (int) Math.min((long) from + CHUNK_SIZE, limit);
+            while (to < limit && buffer.get(to - 1) != '\n') {
+                to++;
+            }
+            chunks.add(new int[]{from, to});
+            from = to;
+        }
+        return chunks;
+    }
+
+    /**
+     * Parser of single chunk with local open addressing dictionary of byte ranges.
+     */
+    private class ChunkParser {
+        private final ByteBuffer buffer;
+        private final Map<String, String> global;
+
+        private int[] hashes = new int[256];
+        private int[] starts = new int[256];
+        private int[] lengths = new int[256];
+        private String[] values = new String[256];
+        private int size;
+
+        private int position;
+        private int end;
+
+        ChunkParser(ByteBuffer buffer, Map<String, String> global) {
+            this.buffer = buffer;
+            this.global = global;
+        }
+
+        List<Student> parse(int from, int to) {
+            final List<Student> students = new ArrayList<>();
+            position = from;
+            end = to;
+            while (position < end) {
+                final byte first = buffer.get(position);
+                if (first == '\n' || first == '\r') {
+                    position++;
+                    continue;
+                }
+                final int id = parseId();
+                final String firstName = parseString(false);
+                final String lastName = parseString(false);
+                final String group = parseString(true);
+                students.add(new Student(id, firstName, lastName, group));
+            }
+            return students;
+        }
+
+        private UncheckedIOException error(String message) {
+            return new UncheckedIOException(new IOException(message + " at byte " + position));
+        }
+
+        private int parseId() {
+            final boolean negative = buffer.get(position) == '-';
+            if (negative) {
+                position++;
+            }
+            long value = 0;
+            final int start = position;
+            while (position < end && buffer.get(position) != delimiter) {
+                final int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw error("Invalid id");
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw error("Id is out of range");
+                }
+                position++;
+            }
+            if (position == start || position == end) {
+                throw error("Invalid id");
+            }
+            position++;
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw error("Id is out of range");
+            }
+            return (int) value;
+        }
+
+        private String parseString(boolean last) {
+            final int start = position;
+            int hash = 0;
+            while (position < end) {
+                final byte b = buffer.get(position);
+                if (b == delimiter || b == '\n') {
+                    break;
+                }
+                hash = 31 * hash + b;
+                position++;
+            }
+            int length = position - start;
+            if (last) {
+                if (position < end && buffer.get(position) == delimiter) {
+                    throw error("Too many fields");
+                }
+                if (length > 0 && buffer.get(start + length - 1) == '\r') {
+                    length--;
+                    hash = 0;
+                    for (int i = start; i < start + length; i++) {
+                        hash = 31 * hash + buffer.get(i);
+                    }
+                }
+            } else if (position == end || buffer.get(position) != delimiter) {
+                throw error("Too few fields");
+            }
+            position++;
+            return lookup(start, length, hash);
+        }
+
+        private boolean matches(int index, int start, int length) {
+            if (lengths[index] != length) {
+                return false;
+            }
+            final int other = starts[index];
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(start + i) != buffer.get(other + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String lookup(int start, int length, int hash) {
+            final int mask = values.length - 1;
+            int index = (hash ^ (hash >>> 16)) & mask;
+            while (values[index] != null) {
+                if (hashes[index] == hash && matches(index, start, length)) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            final byte[] bytes = new byte[length];
+            buffer.duplicate().position(start).get(bytes);
+            final String value = global.computeIfAbsent(new String(bytes, StandardCharsets.UTF_8), s -> s);
+            hashes[index] = hash;
+            starts[index] = start;
+            lengths[index] = length;
+            values[index] = value;
+            if (++size * 2 > values.length) {
+                rehash();
+            }
+            return value;
+        }
+
+        private void rehash() {
+            final int[] oldHashes = hashes;
+            final int[] oldStarts = starts;
+            final int[] oldLengths = lengths;
+            final String[] oldValues = values;
+            hashes = new int[oldValues.length * 2];
+            starts = new int[oldValues.length * 2];
+            lengths = new int[oldValues.length * 2];
+            values = new String[oldValues.length * 2];
+            final int mask = values.length - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int index = (oldHashes[i] ^ (oldHashes[i] >>> 16)) & mask;
+                    while (values[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    hashes[index] = oldHashes[i];
+                    starts[index] = oldStarts[i];
+                    lengths[index] = oldLengths[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+    }
+}
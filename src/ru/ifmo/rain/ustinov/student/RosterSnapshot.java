@@ -0,0 +1,259 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.IntStream;
+
+/**
+ * Memory-mapped binary snapshot of students. <p>
+ * Snapshot file consists of big-endian 32-bit integers and UTF-8 strings:
+ * <pre>
+ * magic, version, students count n, dictionary size d
+ * d + 1 string offsets, string bytes padded to 4 bytes
+ * n ids, n first name indices, n last name indices, n group indices
+ * n indices of students in id order, n indices of students in name order
+ * </pre>
+ * Loading maps the file and creates views of its columns, so no per-student work is done.
+ * Students and strings are materialized lazily and cached, so every student
+ * is represented by single {@link Student} instance.
+ *
+ * @see #write(Collection, Path)
+ * @see #load(Path)
+ */
+public class RosterSnapshot {
+    private static final int MAGIC = 0x53545544;
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 4;
+    private static final int COLUMNS = 6;
+
+    private final int size;
+    private final ByteBuffer strings;
+    private final IntBuffer offsets;
+    private final IntBuffer ids;
+    private final IntBuffer firstNames;
+    private final IntBuffer lastNames;
+    private final IntBuffer groups;
+    private final IntBuffer byId;
+    private final IntBuffer byName;
+
+    private final AtomicReferenceArray<String> dictionary;
+    private final AtomicReferenceArray<Student> students;
+
+    private RosterSnapshot(ByteBuffer buffer) throws IOException {
+        final IntBuffer header = buffer.asIntBuffer();
+        if (header.remaining() < HEADER_INTS || header.get(0) != MAGIC) {
+            throw new IOException("Not a roster snapshot");
+        }
+        if (header.get(1) != VERSION) {
+            throw new IOException("Unsupported roster snapshot version " + header.get(1));
+        }
+        size = header.get(2);
+        final int dictionarySize = header.get(3);
+        final long offsetsStart = HEADER_INTS * Integer.BYTES;
+        final long stringsStart = offsetsStart + (dictionarySize + 1L) * Integer.BYTES;
+        if (size < 0 || dictionarySize < 0 || stringsStart > buffer.capacity()) {
+            throw corrupt();
+        }
+        final int stringsLength = header.get(HEADER_INTS + dictionarySize);
+        if (stringsLength < 0
+                || stringsStart + align(stringsLength) + (long) COLUMNS * size * Integer.BYTES > buffer.capacity()) {
+            throw corrupt();
+        }
+
+        int position = (int) offsetsStart;
+        offsets = slice(buffer, position, dictionarySize + 1);
+        position = (int) stringsStart;
+        strings = buffer.duplicate().position(position).limit(position + stringsLength).slice();
+        position += (int) align(stringsLength);
+        ids = slice(buffer, position, size);
+        firstNames = slice(buffer, position += size * Integer.BYTES, size);
+        lastNames = slice(buffer, position += size * Integer.BYTES, size);
+        groups = slice(buffer, position += size * Integer.BYTES, size);
+        byId = slice(buffer, position += size * Integer.BYTES, size);
+        byName = slice(buffer, position + size * Integer.BYTES, size);
+
+        dictionary = new AtomicReferenceArray<>(dictionarySize);
+        students = new AtomicReferenceArray<>(size);
+    }
+
+    private static IntBuffer slice(ByteBuffer buffer, int position, int length) {
+        return buffer.duplicate().position(position).limit(position + length * Integer.BYTES).slice().asIntBuffer();
+    }
+
+    private static long align(int length) {
+        return ((long) length + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+    }
+
+    private static IOException corrupt() {
+        return new IOException("Corrupt roster snapshot");
+    }
+
+    /**
+     * Maps snapshot file into memory.
+     *
+     * @param file snapshot file
+     * @return loaded snapshot
+     * @throws IOException if file cannot be read or is not a valid snapshot
+     */
+    public static RosterSnapshot load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Roster snapshot is too large: " + channel.size());
+            }
+            return new RosterSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes snapshot of given students.
+     *
+     * @param collection students to write
+     * @param file       snapshot file
+     * @throws IOException if snapshot cannot be written
+     */
+    public static void write(Collection<Student> collection, Path file) throws IOException {
+        final List<Student> list = new ArrayList<>(collection);
+        final int n = list.size();
+        final Map<String, Integer> indices = new HashMap<>();
+        final List<byte[]> dictionary = new ArrayList<>();
+        final int[] ids = new int[n];
+        final int[][] columns = new int[3][n];
+        for (int i = 0; i < n; i++) {
+            final Student student = list.get(i);
+            ids[i] = student.getId();
+            final String[] values = {student.getFirstName(), student.getLastName(), student.getGroup()};
+            for (int c = 0; c < values.length; c++) {
+                columns[c][i] = indices.computeIfAbsent(values[c], value -> {
+                    dictionary.add(value.getBytes(StandardCharsets.UTF_8));
+                    return dictionary.size() - 1;
+                });
+            }
+        }
+        final int[] byId = IdSort.permutation(ids);
+        final int[] byName = IntStream.range(0, n).boxed()
+                .sorted((a, b) -> Query.BY_NAME.compare(list.get(a), list.get(b)))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(dictionary.size());
+            int offset = 0;
+            out.writeInt(offset);
+            for (final byte[] bytes : dictionary) {
+                out.writeInt(offset += bytes.length);
+            }
+            for (final byte[] bytes : dictionary) {
+                out.write(bytes);
+            }
+            out.write(new byte[(int) align(offset) - offset]);
+            for (final int[] column : new int[][]{ids, columns[0], columns[1], columns[2], byId, byName}) {
+                for (final int value : column) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    private String getString(int index) {
+        String value = dictionary.get(index);
+        if (value == null) {
+            final int from = offsets.get(index);
+            final byte[] bytes = new byte[offsets.get(index + 1) - from];
+            strings.duplicate().position(from).get(bytes);
+            dictionary.compareAndSet(index, null, new String(bytes, StandardCharsets.UTF_8));
+            value = dictionary.get(index);
+        }
+        return value;
+    }
+
+    /**
+     * Returns number of students in snapshot.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns student in snapshot order.
+     *
+     * @param index student index
+     * @return student with given index
+     */
+    public Student get(int index) {
+        Student student = students.get(index);
+        if (student == null) {
+            students.compareAndSet(index, null, new Student(
+                    ids.get(index),
+                    getString(firstNames.get(index)),
+                    getString(lastNames.get(index)),
+                    getString(groups.get(index))
+            ));
+            student = students.get(index);
+        }
+        return student;
+    }
+
+    private List<Student> view(IntBuffer permutation) {
+        return new StudentList() {
+            @Override
+            public Student get(int index) {
+                return RosterSnapshot.this.get(permutation == null ? index : permutation.get(index));
+            }
+        };
+    }
+
+    /**
+     * Returns students in snapshot order.
+     *
+     * @return unmodifiable view of students
+     */
+    public List<Student> students() {
+        return view(null);
+    }
+
+    /**
+     * Returns students in {@link Query#BY_ID id order}, using prebuilt permutation.
+     *
+     * @return unmodifiable view of students
+     */
+    public List<Student> sortedById() {
+        return view(byId);
+    }
+
+    /**
+     * Returns students in {@link Query#BY_NAME name order}, using prebuilt permutation.
+     *
+     * @return unmodifiable view of students
+     */
+    public List<Student> sortedByName() {
+        return view(byName);
+    }
+
+    private abstract class StudentList extends AbstractList<Student> implements RandomAccess {
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
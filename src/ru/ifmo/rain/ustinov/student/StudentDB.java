@@ -1,22 +1,58 @@
 package ru.ifmo.rain.ustinov.student;
 
+import info.kgeorgiy.java.advanced.student.AdvancedStudentGroupQuery;
 import info.kgeorgiy.java.advanced.student.Group;
 import info.kgeorgiy.java.advanced.student.Student;
-import info.kgeorgiy.java.advanced.student.StudentGroupQuery;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-public class StudentDB implements StudentGroupQuery {
+public class StudentDB implements AdvancedStudentGroupQuery {
 
-    private static final Comparator<Student> STUDENT_NAME_COMPARATOR =
-            Comparator.comparing(Student::getLastName)
-                    .thenComparing(Student::getFirstName).
-                    thenComparing(Student::getId);
+    /**
+     * Default size of collection, starting from which queries are executed on parallel streams.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    private final int parallelThreshold;
+
+    /**
+     * Default constructor.
+     * Creates a StudentDB instance switching to parallel execution for collections
+     * of at least {@link #DEFAULT_PARALLEL_THRESHOLD} students.
+     */
+    public StudentDB() {
+        this(DEFAULT_PARALLEL_THRESHOLD);
+    }
+
+    /**
+     * Threshold constructor.
+     * Creates a StudentDB instance switching to parallel execution for collections
+     * of at least {@code parallelThreshold} students. Use {@code 0} to force parallel execution
+     * and {@link Integer#MAX_VALUE} to force sequential execution.
+     * <p>
+     * Results of parallel execution are identical to sequential ones: parallel sorts are stable
+     * and groups are collected by order-preserving merges.
+     *
+     * @param parallelThreshold minimal size of collection processed in parallel
+     */
+    public StudentDB(int parallelThreshold) {
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("Parallel threshold must be non-negative");
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    private <T> Stream<T> stream(Collection<T> collection) {
+        return collection.size() >= parallelThreshold ? collection.parallelStream() : collection.stream();
+    }
 
     private Stream<Map.Entry<String,List<Student>>> getGroupEntryStream(Collection<Student> collection) {
-        return collection.stream()
+        return stream(collection)
                 .collect(Collectors.groupingBy(Student::getGroup, TreeMap::new, Collectors.toList()))
                 .entrySet()
                 .stream();
@@ -53,80 +89,244 @@ public class StudentDB implements StudentGroupQuery {
                 .map(Map.Entry::getKey).orElse("");
     }
 
+    private Query query(Collection<Student> collection) {
+        return Query.from(collection).parallel(collection.size() >= parallelThreshold);
+    }
+
     @Override
     public List<String> getFirstNames(List<Student> list) {
-        return list.stream().map(Student::getFirstName).collect(Collectors.toList());
+        return query(list).select(Student::getFirstName);
     }
 
     @Override
     public List<String> getLastNames(List<Student> list) {
-        return list.stream().map(Student::getLastName).collect(Collectors.toList());
+        return query(list).select(Student::getLastName);
     }
 
     @Override
     public List<String> getGroups(List<Student> list) {
-        return list.stream().map(Student::getGroup).collect(Collectors.toList());
+        return query(list).select(Student::getGroup);
     }
 
     @Override
     public List<String> getFullNames(List<Student> list) {
-        return list.stream().map(s -> s.getFirstName() + ' ' + s.getLastName()).collect(Collectors.toList());
+        return query(list).select(StudentDB::getFullName);
+    }
+
+    private static String getFullName(Student student) {
+        return student.getFirstName() + ' ' + student.getLastName();
     }
 
 
     @Override
     public Set<String> getDistinctFirstNames(List<Student> list) {
-        return list.stream().map(Student::getFirstName).collect(Collectors.toCollection(TreeSet::new));
+        return stream(list).map(Student::getFirstName).collect(Collectors.toCollection(TreeSet::new));
     }
 
     @Override
     public String getMinStudentFirstName(List<Student> list) {
-        return list.stream().min(Comparator.comparing(Student::getId)).map(Student::getFirstName).orElse("");
+        return stream(list).min(Query.BY_ID).map(Student::getFirstName).orElse("");
     }
 
     @Override
     public List<Student> sortStudentsById(Collection<Student> collection) {
-        return collection.stream()
-                .sorted(Comparator.comparing(Student::getId))
-                .collect(Collectors.toList());
-    }
-
-    private Stream<Student> getStudentsSortedByName(Collection<Student> collection) {
-        return collection.stream().sorted(STUDENT_NAME_COMPARATOR);
+        return query(collection).orderById().list();
     }
 
     @Override
     public List<Student> sortStudentsByName(Collection<Student> collection) {
-        return getStudentsSortedByName(collection)
-                .collect(Collectors.toList());
+        return query(collection).orderByName().list();
     }
 
     @Override
     public List<Student> findStudentsByFirstName(Collection<Student> collection, String s) {
-        return getStudentsSortedByName(collection)
-                .filter(student -> student.getFirstName().equals(s))
-                .collect(Collectors.toList());
+        return query(collection).whereFirstName(s).orderByName().list();
     }
 
     @Override
     public List<Student> findStudentsByLastName(Collection<Student> collection, String s) {
-        return getStudentsSortedByName(collection)
-                .filter(student -> student.getLastName().equals(s))
-                .collect(Collectors.toList());
+        return query(collection).whereLastName(s).orderByName().list();
     }
 
     @Override
     public List<Student> findStudentsByGroup(Collection<Student> collection, String s) {
-        return getStudentsSortedByName(collection)
-                .filter(student -> student.getGroup().equals(s))
-                .collect(Collectors.toList());
+        return query(collection).whereGroup(s).orderByName().list();
+    }
+
+    /**
+     * Returns page of students sorted by name.
+     *
+     * @param collection students to sort
+     * @param offset     number of students skipped from the beginning
+     * @param limit      maximal number of students returned
+     * @return at most {@code limit} students following first {@code offset} ones in
+     * {@link #sortStudentsByName(Collection)} order
+     */
+    public List<Student> sortStudentsByName(Collection<Student> collection, int offset, int limit) {
+        return query(collection).orderByName().offset(offset).limit(limit).list();
+    }
+
+    /**
+     * Returns page of students sorted by name, using keyset cursor.
+     *
+     * @param collection students to sort
+     * @param after      last student of the previous page or {@code null} for the first page
+     * @param limit      maximal number of students returned
+     * @return at most {@code limit} students following {@code after} in
+     * {@link #sortStudentsByName(Collection)} order
+     */
+    public List<Student> sortStudentsByName(Collection<Student> collection, Student after, int limit) {
+        return query(collection).orderByName().after(after).limit(limit).list();
+    }
+
+    /**
+     * Returns page of {@link #findStudentsByFirstName(Collection, String)} result.
+     *
+     * @see #sortStudentsByName(Collection, int, int)
+     */
+    public List<Student> findStudentsByFirstName(Collection<Student> collection, String s, int offset, int limit) {
+        return query(collection).whereFirstName(s).orderByName().offset(offset).limit(limit).list();
+    }
+
+    /**
+     * Returns page of {@link #findStudentsByFirstName(Collection, String)} result, using keyset cursor.
+     *
+     * @see #sortStudentsByName(Collection, Student, int)
+     */
+    public List<Student> findStudentsByFirstName(Collection<Student> collection, String s, Student after, int limit) {
+        return query(collection).whereFirstName(s).orderByName().after(after).limit(limit).list();
+    }
+
+    /**
+     * Returns page of {@link #findStudentsByLastName(Collection, String)} result.
+     *
+     * @see #sortStudentsByName(Collection, int, int)
+     */
+    public List<Student> findStudentsByLastName(Collection<Student> collection, String s, int offset, int limit) {
+        return query(collection).whereLastName(s).orderByName().offset(offset).limit(limit).list();
+    }
+
+    /**
+     * Returns page of {@link #findStudentsByLastName(Collection, String)} result, using keyset cursor.
+     *
+     * @see #sortStudentsByName(Collection, Student, int)
+     */
+    public List<Student> findStudentsByLastName(Collection<Student> collection, String s, Student after, int limit) {
+        return query(collection).whereLastName(s).orderByName().after(after).limit(limit).list();
+    }
+
+    /**
+     * Returns page of {@link #findStudentsByGroup(Collection, String)} result.
+     *
+     * @see #sortStudentsByName(Collection, int, int)
+     */
+    public List<Student> findStudentsByGroup(Collection<Student> collection, String s, int offset, int limit) {
+        return query(collection).whereGroup(s).orderByName().offset(offset).limit(limit).list();
+    }
+
+    /**
+     * Returns page of {@link #findStudentsByGroup(Collection, String)} result, using keyset cursor.
+     *
+     * @see #sortStudentsByName(Collection, Student, int)
+     */
+    public List<Student> findStudentsByGroup(Collection<Student> collection, String s, Student after, int limit) {
+        return query(collection).whereGroup(s).orderByName().after(after).limit(limit).list();
     }
 
     @Override
     public Map<String, String> findStudentNamesByGroup(Collection<Student> collection, final String group) {
-        return collection.stream()
+        return stream(collection)
                 .filter(student -> student.getGroup().equals(group))
                 .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, (a, b) -> (a.compareTo(b) < 0 ? a : b)));
     }
-}
 
+    /**
+     * Open addressing hash set of non-negative {@code long} keys.
+     */
+    private static final class LongHashSet {
+        private static final long EMPTY = -1;
+
+        private long[] table = newTable(16);
+        private int size;
+
+        private static long[] newTable(int capacity) {
+            final long[] table = new long[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+
+        private static int index(long key, int mask) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        }
+
+        void add(long key) {
+            final int mask = table.length - 1;
+            int i = index(key, mask);
+            while (table[i] != EMPTY) {
+                if (table[i] == key) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = key;
+            if (++size * 2 > table.length) {
+                final long[] old = table;
+                table = newTable(old.length * 2);
+                size = 0;
+                for (final long k : old) {
+                    if (k != EMPTY) {
+                        add(k);
+                    }
+                }
+            }
+        }
+
+        LongHashSet addAll(LongHashSet other) {
+            for (final long key : other.table) {
+                if (key != EMPTY) {
+                    add(key);
+                }
+            }
+            return this;
+        }
+
+        long[] keys() {
+            return Arrays.stream(table).filter(key -> key != EMPTY).toArray();
+        }
+    }
+
+    private static int getDictionaryId(Map<String, Integer> dictionary, AtomicInteger size, String key) {
+        return dictionary.computeIfAbsent(key, k -> size.getAndIncrement());
+    }
+
+    /**
+     * Returns the name of the student such that most number of groups has student with that name.
+     * <p>
+     * Students are scanned once: full names and groups are mapped to dense ids,
+     * and distinct (name, group) pairs are collected as packed {@code long} keys.
+     */
+    @Override
+    public String getMostPopularName(Collection<Student> collection) {
+        final boolean parallel = collection.size() >= parallelThreshold;
+        final Map<String, Integer> names = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+        final Map<String, Integer> groups = parallel ? new ConcurrentHashMap<>() : new HashMap<>();
+        final AtomicInteger namesSize = new AtomicInteger();
+        final AtomicInteger groupsSize = new AtomicInteger();
+        final LongHashSet nameGroups = stream(collection).collect(Collector.of(
+                LongHashSet::new,
+                (set, student) -> set.add((long) getDictionaryId(names, namesSize, getFullName(student)) << 32
+                        | getDictionaryId(groups, groupsSize, student.getGroup())),
+                LongHashSet::addAll,
+                Collector.Characteristics.UNORDERED
+        ));
+
+        final int[] groupCounts = new int[names.size()];
+        for (final long nameGroup : nameGroups.keys()) {
+            groupCounts[(int) (nameGroup >>> 32)]++;
+        }
+        return names.entrySet().stream()
+                .max(Comparator.<Map.Entry<String, Integer>>comparingInt(name -> groupCounts[name.getValue()])
+                        .thenComparing(Map.Entry::getKey))
+                .map(Map.Entry::getKey).orElse("");
+    }
+}
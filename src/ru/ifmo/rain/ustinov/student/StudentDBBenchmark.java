@@ -0,0 +1,75 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+/**
+ * Measures scaling of parallel {@link StudentDB} queries from one to all available cores.
+ */
+public class StudentDBBenchmark {
+    private static final int WARMUP = 2;
+    private static final int MEASURE = 5;
+
+    private static <R> double measure(ForkJoinPool pool, Function<List<Student>, R> query, List<Student> students, R expected)
+            throws ExecutionException, InterruptedException {
+        for (int i = 0; i < WARMUP; i++) {
+            pool.submit(() -> query.apply(students)).get();
+        }
+        long total = 0;
+        for (int i = 0; i < MEASURE; i++) {
+            final long start = System.nanoTime();
+            final R result = pool.submit(() -> query.apply(students)).get();
+            total += System.nanoTime() - start;
+            if (!result.equals(expected)) {
+                throw new AssertionError("Parallel result differs from sequential one");
+            }
+        }
+        return total / 1e6 / MEASURE;
+    }
+
+    /**
+     * Runs benchmark.
+     * Usage: {@code StudentDBBenchmark [size [maxThreads [names [groups]]]]}.
+     *
+     * @param args command line arguments
+     * @throws Exception if benchmark failed
+     */
+    public static void main(String[] args) throws Exception {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        final int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        final int names = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        final int groups = args.length > 3 ? Integer.parseInt(args[3]) : 10_000;
+        final List<Student> students = new RosterGenerator(names, groups, 0, 2019).generate(size);
+
+        final StudentDB sequential = new StudentDB(Integer.MAX_VALUE);
+        final StudentDB parallel = new StudentDB(0);
+        final Map<String, Function<StudentDB, Function<List<Student>, Object>>> queries = Map.of(
+                "sortStudentsByName", db -> db::sortStudentsByName,
+                "sortStudentsById", db -> db::sortStudentsById,
+                "getGroupsByName", db -> db::getGroupsByName,
+                "getDistinctFirstNames", db -> db::getDistinctFirstNames,
+                "getLargestGroupFirstName", db -> db::getLargestGroupFirstName,
+                "getMostPopularName", db -> db::getMostPopularName
+        );
+
+        System.out.printf("%d students, %d names, %d groups%n", size, names, groups);
+        for (final var query : queries.entrySet()) {
+            final ForkJoinPool single = new ForkJoinPool(1);
+            final Function<List<Student>, Object> sequentialQuery = query.getValue().apply(sequential);
+            final Object expected = sequentialQuery.apply(students);
+            System.out.printf("%-26s sequential %10.1f ms%n", query.getKey(), measure(single, sequentialQuery, students, expected));
+            single.shutdown();
+            final Function<List<Student>, Object> parallelQuery = query.getValue().apply(parallel);
+            for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(2 * threads, maxThreads) : threads + 1) {
+                final ForkJoinPool pool = new ForkJoinPool(threads);
+                System.out.printf("%-26s %2d threads %10.1f ms%n", query.getKey(), threads, measure(pool, parallelQuery, students, expected));
+                pool.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.ifmo.rain.ustinov.student;
+
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Measures time, allocation and garbage collection of every {@link StudentDB} query on synthetic roster. <p>
+ * Queries run sequentially on the calling thread, so allocation is measured precisely.
+ *
+ * @see RosterGenerator
+ */
+public class StudentQueryBenchmark {
+    private static final int WARMUP = 3;
+    private static final int MEASURE = 10;
+
+    /**
+     * Keeps results reachable, so queries are not optimized out.
+     */
+    @SuppressWarnings("unused")
+    private static volatile Object sink;
+
+    private static long allocatedBytes() {
+        final var threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static long[] gcCountAndTime() {
+        long count = 0;
+        long time = 0;
+        for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(gc.getCollectionCount(), 0);
+            time += Math.max(gc.getCollectionTime(), 0);
+        }
+        return new long[]{count, time};
+    }
+
+    private static void measure(String name, Function<List<Student>, Object> query, List<Student> students) {
+        for (int i = 0; i < WARMUP; i++) {
+            sink = query.apply(students);
+        }
+        final long[] gcBefore = gcCountAndTime();
+        final long allocatedBefore = allocatedBytes();
+        final long start = System.nanoTime();
+        for (int i = 0; i < MEASURE; i++) {
+            sink = query.apply(students);
+        }
+        final long time = System.nanoTime() - start;
+        final long allocated = allocatedBytes() - allocatedBefore;
+        final long[] gcAfter = gcCountAndTime();
+        System.out.printf("%-26s %10.2f ms/op %10.2f MB/op %6d gc %8d gc ms%n",
+                name, time / 1e6 / MEASURE, allocated / 1048576.0 / MEASURE,
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    /**
+     * Runs benchmark.
+     * Usage: {@code StudentQueryBenchmark [size [names [groups [skew [seed]]]]]}.
+     *
+     * @param args command line arguments
+     */
+    public static void main(String[] args) {
+        final int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        final int names = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        final int groups = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        final double skew = args.length > 3 ? Double.parseDouble(args[3]) : 1;
+        final long seed = args.length > 4 ? Long.parseLong(args[4]) : 2019;
+        final List<Student> students = new RosterGenerator(names, groups, skew, seed).generate(size);
+        final Student sample = students.get(0);
+
+        final StudentDB db = new StudentDB(Integer.MAX_VALUE);
+        final Map<String, Function<List<Student>, Object>> queries = new LinkedHashMap<>();
+        queries.put("getFirstNames", db::getFirstNames);
+        queries.put("getLastNames", db::getLastNames);
+        queries.put("getGroups", db::getGroups);
+        queries.put("getFullNames", db::getFullNames);
+        queries.put("getDistinctFirstNames", db::getDistinctFirstNames);
+        queries.put("getMinStudentFirstName", db::getMinStudentFirstName);
+        queries.put("sortStudentsById", db::sortStudentsById);
+        queries.put("sortStudentsByName", db::sortStudentsByName);
+        queries.put("findStudentsByFirstName", list -> db.findStudentsByFirstName(list, sample.getFirstName()));
+        queries.put("findStudentsByLastName", list -> db.findStudentsByLastName(list, sample.getLastName()));
+        queries.put("findStudentsByGroup", list -> db.findStudentsByGroup(list, sample.getGroup()));
+        queries.put("findStudentNamesByGroup", list -> db.findStudentNamesByGroup(list, sample.getGroup()));
+        queries.put("getGroupsByName", db::getGroupsByName);
+        queries.put("getGroupsById", db::getGroupsById);
+        queries.put("getLargestGroup", db::getLargestGroup);
+        queries.put("getLargestGroupFirstName", db::getLargestGroupFirstName);
+        queries.put("getMostPopularName", db::getMostPopularName);
+
+        System.out.printf("%d students, %d names, %d groups, skew %.2f, seed %d%n", size, names, groups, skew, seed);
+        queries.forEach((name, query) -> measure(name, query, students));
+    }
+}
@@ -1,5 +1,5 @@
 #!/usr/bin/env bash
-javac -d ./run/ -cp ./artifacts/info.kgeorgiy.java.advanced.student.jar ./src/ru/ifmo/rain/ustinov/student/StudentDB.java
+javac -d ./run/ -cp ./artifacts/info.kgeorgiy.java.advanced.student.jar ./src/ru/ifmo/rain/ustinov/student/*.java
 cp ./lib/* ./run/
 cp ./artifacts/info.kgeorgiy.java.advanced.student.jar ./run/
 cp ./artifacts/info.kgeorgiy.java.advanced.base.jar ./run/